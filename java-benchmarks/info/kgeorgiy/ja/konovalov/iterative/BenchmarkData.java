@@ -0,0 +1,52 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Shared helpers of benchmarks: input generation and element cost emulation.
+ */
+final class BenchmarkData {
+    private BenchmarkData() {
+    }
+    
+    /**
+     * Generates list of pseudo-random integers, same for every run
+     *
+     * @param size number of elements
+     * @return generated list, that supports random access
+     */
+    static List<Integer> values(int size) {
+        return new Random(size).ints(size, 0, 1_000_000).boxed().toList();
+    }
+    
+    /**
+     * Emulates element that costs {@code cost} units of work to process
+     *
+     * @param cost  amount of work, see {@link Blackhole#consumeCPU(long)}
+     * @param value element
+     * @return the same element
+     */
+    static int work(int cost, Integer value) {
+        if (cost > 0) {
+            Blackhole.consumeCPU(cost);
+        }
+        return value;
+    }
+    
+    /**
+     * Returns parallel stream over every {@code step}-th element, the same elements that
+     * {@link IterativeParallelism} processes with the given step
+     *
+     * @param values list of elements
+     * @param step   step between processed elements
+     * @return parallel stream of elements
+     */
+    static Stream<Integer> stepped(List<Integer> values, int step) {
+        return IntStream.range(0, Math.ceilDiv(values.size(), step)).parallel().mapToObj(i -> values.get(i * step));
+    }
+}
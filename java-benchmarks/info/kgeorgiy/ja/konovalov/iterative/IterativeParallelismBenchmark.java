@@ -0,0 +1,105 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link IterativeParallelism} operations, with raw threads and with {@link ParallelMapperImpl}.
+ * Compare with {@link ParallelStreamBaselineBenchmark} for the same sizes, costs and steps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IterativeParallelismBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    
+    /**
+     * Work per element in {@link org.openjdk.jmh.infra.Blackhole#consumeCPU} units
+     */
+    @Param({"0", "100"})
+    public int cost;
+    
+    @Param({"1", "3"})
+    public int step;
+    
+    @Param({"1", "4", "16"})
+    public int threads;
+    
+    /**
+     * {@code threads} runs blocks on new threads, {@code mapper} runs them on {@link ParallelMapperImpl}
+     * with the same number of threads
+     */
+    @Param({"threads", "mapper"})
+    public String mode;
+    
+    private List<Integer> values;
+    private ParallelMapperImpl mapper;
+    private IterativeParallelism parallelism;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = BenchmarkData.values(size);
+        if ("mapper".equals(mode)) {
+            mapper = new ParallelMapperImpl(threads);
+            parallelism = new IterativeParallelism(mapper);
+        } else {
+            parallelism = new IterativeParallelism();
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (mapper != null) {
+            mapper.close();
+            mapper = null;
+        }
+    }
+    
+    @Benchmark
+    public List<Integer> map() throws InterruptedException {
+        final int currentCost = cost;
+        return parallelism.map(threads, values, value -> BenchmarkData.work(currentCost, value) + 1, step);
+    }
+    
+    @Benchmark
+    public Integer maximum() throws InterruptedException {
+        final int currentCost = cost;
+        return parallelism.maximum(threads, values, Comparator.comparingInt(value -> BenchmarkData.work(currentCost, value)), step);
+    }
+    
+    @Benchmark
+    public int count() throws InterruptedException {
+        final int currentCost = cost;
+        return parallelism.count(threads, values, value -> BenchmarkData.work(currentCost, value) % 3 == 0, step);
+    }
+    
+    @Benchmark
+    public Integer reduce() throws InterruptedException {
+        final int currentCost = cost;
+        return parallelism.reduce(threads, values, 0, (a, b) -> a + BenchmarkData.work(currentCost, b), step);
+    }
+    
+    @Benchmark
+    public String join() throws InterruptedException {
+        return parallelism.join(threads, values, step);
+    }
+}
@@ -0,0 +1,73 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link ParallelMapperImpl#map} on its own, for different kinds of pools.
+ * {@link ParallelStreamBaselineBenchmark#map} with step 1 is the baseline for the same function.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelMapperBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    
+    @Param({"0", "100"})
+    public int cost;
+    
+    @Param({"1", "4", "16"})
+    public int threads;
+    
+    /**
+     * {@code fixed} is {@link ParallelMapperImpl#ParallelMapperImpl(int)},
+     * {@code elastic} grows from one thread up to {@code threads},
+     * {@code virtual} allows {@code threads} virtual threads at once
+     */
+    @Param({"fixed", "elastic", "virtual"})
+    public String kind;
+    
+    private List<Integer> values;
+    private ParallelMapperImpl mapper;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = BenchmarkData.values(size);
+        mapper = switch (kind) {
+            case "fixed" -> new ParallelMapperImpl(threads);
+            case "elastic" -> new ParallelMapperImpl(1, threads, Duration.ofMillis(100));
+            case "virtual" -> ParallelMapperImpl.withVirtualThreads(threads);
+            default -> throw new IllegalArgumentException("Unknown mapper kind " + kind);
+        };
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mapper.close();
+    }
+    
+    @Benchmark
+    public List<Integer> map() throws InterruptedException {
+        final int currentCost = cost;
+        return mapper.map(value -> BenchmarkData.work(currentCost, value) + 1, values);
+    }
+}
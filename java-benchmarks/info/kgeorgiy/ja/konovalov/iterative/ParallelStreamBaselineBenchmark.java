@@ -0,0 +1,78 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * {@code parallelStream()} versions of {@link IterativeParallelismBenchmark} operations.
+ * Streams run on the common fork-join pool, so there is no thread count parameter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelStreamBaselineBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    
+    @Param({"0", "100"})
+    public int cost;
+    
+    @Param({"1", "3"})
+    public int step;
+    
+    private List<Integer> values;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = BenchmarkData.values(size);
+    }
+    
+    @Benchmark
+    public List<Integer> map() {
+        final int currentCost = cost;
+        return BenchmarkData.stepped(values, step).map(value -> BenchmarkData.work(currentCost, value) + 1).toList();
+    }
+    
+    @Benchmark
+    public Integer maximum() {
+        final int currentCost = cost;
+        return BenchmarkData.stepped(values, step)
+                .max(Comparator.comparingInt(value -> BenchmarkData.work(currentCost, value)))
+                .orElseThrow();
+    }
+    
+    @Benchmark
+    public long count() {
+        final int currentCost = cost;
+        return BenchmarkData.stepped(values, step).filter(value -> BenchmarkData.work(currentCost, value) % 3 == 0).count();
+    }
+    
+    @Benchmark
+    public Integer reduce() {
+        final int currentCost = cost;
+        return BenchmarkData.stepped(values, step).map(value -> BenchmarkData.work(currentCost, value)).reduce(0, Integer::sum);
+    }
+    
+    @Benchmark
+    public String join() {
+        return BenchmarkData.stepped(values, step).map(Object::toString).collect(Collectors.joining());
+    }
+}
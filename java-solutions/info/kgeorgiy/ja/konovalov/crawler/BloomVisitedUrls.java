@@ -0,0 +1,226 @@
+package info.kgeorgiy.ja.konovalov.crawler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Compact set of urls based on a concurrent Bloom filter, that keeps only bits of url hashes,
+ * a few bytes per url instead of the url itself.
+ * <p>
+ * Without backing directory the set is approximate: url could be reported as already visited,
+ * while it was not, with the configured probability, so some pages could be missed.
+ * With backing directory every url is also appended to a file, and its 64-bit fingerprint
+ * with offset of its record is kept in memory, about 20 bytes per url.
+ * Url, that filter reports as visited, is compared only with records of the same fingerprint,
+ * usually with a single one, so exact check costs one read, however many urls there are.
+ * <p>
+ * Urls are split into buckets by hash, urls of the same bucket are added under the same lock,
+ * so concurrent adds of the same url could not both succeed.
+ */
+final class BloomVisitedUrls implements VisitedUrls {
+    private static final int BUCKETS = 1024;
+    private static final String URLS_FILE = "urls";
+    
+    private final AtomicLongArray bits;
+    private final long size;
+    private final int hashes;
+    private final Bucket[] buckets = new Bucket[BUCKETS];
+    private final Path directory;
+    private final FileChannel urls;
+    private final AtomicLong urlsEnd = new AtomicLong();
+    
+    /**
+     * Fingerprints of urls of a bucket with offsets of their records in open addressing hash table,
+     * guarded by its own monitor. Offsets are stored plus one, so 0 marks empty slot.
+     */
+    private static final class Bucket {
+        private long[] fingerprints = new long[16];
+        private long[] offsets = new long[16];
+        private int count = 0;
+    }
+    
+    /**
+     * Creates empty set
+     *
+     * @param expectedUrls             expected number of urls, should be positive
+     * @param falsePositiveProbability probability to report new url as visited, should be in (0, 1)
+     * @param backingDirectory         directory for exact check or null, if the set should be approximate,
+     *                                 urls file is created in a new subdirectory of it
+     * @throws UncheckedIOException if backing directory or urls file could not be created
+     */
+    BloomVisitedUrls(final long expectedUrls, final double falsePositiveProbability, final Path backingDirectory) {
+        final double ln2 = Math.log(2);
+        final long optimalSize = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveProbability) / (ln2 * ln2));
+        final int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalSize + 63) / 64));
+        this.bits = new AtomicLongArray(words);
+        this.size = (long) words * 64;
+        this.hashes = Math.clamp(Math.round((double) size / expectedUrls * ln2), 1, 30);
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new Bucket();
+        }
+        try {
+            if (backingDirectory == null) {
+                this.directory = null;
+                this.urls = null;
+            } else {
+                this.directory = Files.createTempDirectory(Files.createDirectories(backingDirectory), "visited");
+                this.urls = FileChannel.open(directory.resolve(URLS_FILE),
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("could not create visited urls directory", e);
+        }
+    }
+    
+    @Override
+    public boolean add(final String url) {
+        // two independent hashes, other ones are their combinations, the first one is also a fingerprint
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash = (hash ^ url.charAt(i)) * 0x100000001b3L;
+        }
+        final long first = mix(hash);
+        final long second = mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+        final Bucket bucket = buckets[(int) (first >>> 54)];
+        
+        synchronized (bucket) {
+            boolean added = false;
+            for (int i = 0; i < hashes; i++) {
+                added |= setBit(Math.floorMod(first + i * second, size));
+            }
+            if (urls == null) {
+                return added;
+            }
+            final byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+            if (!added && contains(bucket, first, bytes)) {
+                return false;
+            }
+            put(bucket, first, append(bytes));
+            return true;
+        }
+    }
+    
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+    
+    /**
+     * @return true if bit was not set before
+     */
+    private boolean setBit(final long index) {
+        final int word = (int) (index >>> 6);
+        final long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+        return true;
+    }
+    
+    /**
+     * Compares url with records of urls of the same fingerprint
+     */
+    private boolean contains(final Bucket bucket, final long fingerprint, final byte[] url) {
+        final int mask = bucket.offsets.length - 1;
+        for (int i = (int) fingerprint & mask; bucket.offsets[i] != 0; i = (i + 1) & mask) {
+            if (bucket.fingerprints[i] == fingerprint && recordEquals(bucket.offsets[i] - 1, url)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static void put(final Bucket bucket, final long fingerprint, final long offset) {
+        if ((bucket.count + 1) * 4L > bucket.offsets.length * 3L) {
+            final long[] fingerprints = bucket.fingerprints;
+            final long[] offsets = bucket.offsets;
+            bucket.fingerprints = new long[offsets.length * 2];
+            bucket.offsets = new long[offsets.length * 2];
+            for (int i = 0; i < offsets.length; i++) {
+                if (offsets[i] != 0) {
+                    insert(bucket, fingerprints[i], offsets[i]);
+                }
+            }
+        }
+        insert(bucket, fingerprint, offset + 1);
+        bucket.count++;
+    }
+    
+    private static void insert(final Bucket bucket, final long fingerprint, final long storedOffset) {
+        final int mask = bucket.offsets.length - 1;
+        int i = (int) fingerprint & mask;
+        while (bucket.offsets[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        bucket.fingerprints[i] = fingerprint;
+        bucket.offsets[i] = storedOffset;
+    }
+    
+    /**
+     * Appends record of the url: its length and bytes. Space is reserved atomically,
+     * so urls of different buckets are written concurrently.
+     *
+     * @return offset of the record
+     */
+    private long append(final byte[] url) {
+        final ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + url.length).putInt(url.length).put(url).flip();
+        final long offset = urlsEnd.getAndAdd(record.capacity());
+        try {
+            while (record.hasRemaining()) {
+                urls.write(record, offset + record.position());
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("could not write visited urls", e);
+        }
+        return offset;
+    }
+    
+    private boolean recordEquals(final long offset, final byte[] url) {
+        final ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + url.length);
+        try {
+            while (record.hasRemaining()) {
+                if (urls.read(record, offset + record.position()) < 0) {
+                    return false;
+                }
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("could not read visited urls", e);
+        }
+        return record.getInt(0) == url.length
+                && Arrays.equals(record.array(), Integer.BYTES, record.capacity(), url, 0, url.length);
+    }
+    
+    /**
+     * Deletes urls file, if there is one
+     */
+    @Override
+    public void close() {
+        if (directory == null) {
+            return;
+        }
+        try (final Stream<Path> files = Files.walk(directory)) {
+            urls.close();
+            for (final Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("could not delete visited urls", e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package info.kgeorgiy.ja.konovalov.crawler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class BloomVisitedUrlsTests {
+    private static final int URLS = 20_000;
+    
+    @TempDir
+    private Path directory;
+    
+    private static String url(final int i) {
+        return "http://h" + i % 101 + ".com/p" + i;
+    }
+    
+    private static boolean isEmpty(final Path directory) throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            return files.findAny().isEmpty();
+        }
+    }
+    
+    @Test
+    public void exactWithOverfilledFilter() throws IOException {
+        // filter for 10 urls reports almost every new url as visited, exact check should correct it
+        final BloomVisitedUrls visited = new BloomVisitedUrls(10, 0.5, directory);
+        try {
+            for (int i = 0; i < URLS; i++) {
+                Assertions.assertTrue(visited.add(url(i)), url(i));
+            }
+            for (int i = 0; i < URLS; i++) {
+                Assertions.assertFalse(visited.add(url(i)), url(i));
+            }
+        } finally {
+            visited.close();
+        }
+        Assertions.assertTrue(isEmpty(directory), "urls file is not deleted");
+    }
+    
+    @Test
+    public void approximateFalsePositives() {
+        // probes are added too, so filter is filled up to the expected number of urls only at the end
+        final BloomVisitedUrls visited = new BloomVisitedUrls(2 * URLS, 0.01, null);
+        for (int i = 0; i < URLS; i++) {
+            visited.add(url(i));
+        }
+        for (int i = 0; i < URLS; i++) {
+            Assertions.assertFalse(visited.add(url(i)), url(i));
+        }
+        final long falsePositives = IntStream.range(URLS, 2 * URLS).filter(i -> !visited.add(url(i))).count();
+        Assertions.assertTrue(falsePositives < URLS * 0.01, "false positives " + falsePositives);
+        visited.close();
+    }
+    
+    @Test
+    public void concurrentAddsSucceedOnce() throws InterruptedException {
+        for (final Path backing : new Path[]{null, directory}) {
+            final BloomVisitedUrls visited = new BloomVisitedUrls(10, 0.5, backing);
+            final AtomicInteger added = new AtomicInteger();
+            final List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                threads.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < URLS; i++) {
+                        if (visited.add(url(i))) {
+                            added.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            visited.close();
+            if (backing == null) {
+                Assertions.assertTrue(added.get() <= URLS, "added " + added.get());
+            } else {
+                Assertions.assertEquals(URLS, added.get());
+            }
+        }
+    }
+    
+    @Test
+    public void exactCrawlSameAsDefault() throws IOException {
+        final CrawlerOptions options = CrawlerOptions.DEFAULT.withBloomFilter(5, 0.5).withExactVisitedDirectory(directory);
+        WebCrawlerTests.assertSameAsLayered(options, 0);
+        Assertions.assertTrue(isEmpty(directory), "urls files are not deleted");
+    }
+    
+    @Test
+    public void approximateCrawlMissesOnly() {
+        final WebCrawlerTests.Outcome expected = WebCrawlerTests.crawl(CrawlerOptions.DEFAULT, new WebCrawlerTests.Graph(3000, 5, 0), 6);
+        final WebCrawlerTests.Graph graph = new WebCrawlerTests.Graph(3000, 5, 0);
+        final WebCrawlerTests.Outcome outcome = WebCrawlerTests.crawl(CrawlerOptions.DEFAULT.withBloomFilter(5, 0.5), graph, 6);
+        Assertions.assertTrue(expected.downloaded().containsAll(outcome.downloaded()));
+        Assertions.assertTrue(outcome.downloaded().size() < expected.downloaded().size());
+        Assertions.assertEquals(Set.of(), graph.downloadedTwice());
+        
+        WebCrawlerTests.assertSameAsLayered(CrawlerOptions.DEFAULT.withBloomFilter(1_000_000, 1e-9), 0);
+    }
+    
+    @Test
+    public void invalidOptions() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CrawlerOptions.DEFAULT.withBloomFilter(0, 0.1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CrawlerOptions.DEFAULT.withBloomFilter(10, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CrawlerOptions.DEFAULT.withBloomFilter(10, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CrawlerOptions.DEFAULT.withBloomFilter(10, Double.NaN));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CrawlerOptions.DEFAULT.withExactVisitedDirectory(directory));
+        Assertions.assertNull(CrawlerOptions.DEFAULT.withExactVisitedDirectory(null).exactVisitedDirectory());
+        
+        final CrawlerOptions pipelined = CrawlerOptions.DEFAULT.withPipelined(true).withBloomFilter(10, 0.1);
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new WebCrawler(new WebCrawlerTests.Graph(10, 1, 0), 1, 1, 1, pipelined));
+    }
+}
@@ -0,0 +1,405 @@
+package info.kgeorgiy.ja.konovalov.crawler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * On-disk state of layered crawls, every crawl is stored as an append-only log, that is replayed on resume.
+ * Log of a crawl is kept in a subdirectory of the state directory, named by hash of its start record,
+ * so crawls with different parameters do not interfere. Subdirectory is locked while the crawl is running,
+ * the same crawl could not be run twice at a time, even by different processes.
+ * Every record is a line of tab separated fields, followed by {@link #TERMINATOR}:
+ * <ul>
+ *     <li>{@code S depth url excludes hosts} - crawl start, first record of the log,
+ *     excludes and hosts are {@code -} if they are not given, or {@code +} followed by sorted distinct values,
+ *     separated by line feeds</li>
+ *     <li>{@code F layer url} - url is found and belongs to the layer</li>
+ *     <li>{@code E url message} - error of the url</li>
+ *     <li>{@code D url downloaded} - url is fully processed: downloaded, if the flag is 1, or failed,
+ *     and all its links are logged</li>
+ *     <li>{@code L layer} - layer is finished</li>
+ * </ul>
+ * Url without {@code D} record is processed once again after resume, so repeated records are harmless.
+ * On resume the log is read twice: first to find the unfinished layer, then to restore its urls.
+ * So only urls of the unfinished and the next layers, downloaded urls and errors are kept in memory,
+ * other found urls are passed to the caller one by one.
+ * Records of a processed url: its error, found links and {@code D} record, are written at once and flushed
+ * to the operating system, as well as {@code L} records, so they survive crash of the process.
+ * Other records are flushed together with the next ones, losing them only makes some work to be done again.
+ * Partially written record does not have terminator and is skipped.
+ * Torn line, that crash could leave at the end of the log, is cut off before new records are appended,
+ * so they are not glued to it.
+ */
+final class CrawlStore implements Closeable {
+    private static final String LOG_FILE = "crawl.log";
+    private static final String LOCK_FILE = "crawl.lock";
+    private static final String TERMINATOR = "\t.";
+
+    private final Path directory;
+    private Path log;
+    private FileChannel lock;
+    private BufferedWriter writer;
+    private IOException failure = null;
+
+    /**
+     * State of the crawl restored from the log
+     *
+     * @param layer      number of the first unfinished layer
+     * @param current    urls of the unfinished layer, that are not processed yet
+     * @param next       urls of the next layer, that are already found
+     * @param downloaded successfully downloaded urls
+     * @param errors     errors of urls
+     */
+    record Snapshot(int layer, List<String> current, List<String> next,
+                    List<String> downloaded, Map<String, IOException> errors) {
+    }
+
+    /**
+     * Creates store in the given directory, nothing is read or written until {@link #open}
+     *
+     * @param directory state directory, that contains logs of crawls
+     */
+    CrawlStore(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Locks the log of the crawl, replays it, if it exists, or starts a new one, and opens it for appending.
+     * Directories are created if necessary.
+     *
+     * @param url      starting url of the crawl
+     * @param depth    depth of the crawl
+     * @param excludes excluded substrings of urls or null, if nothing is excluded
+     * @param hosts    allowed hosts or null, if all hosts are allowed
+     * @param found    receives every url, that was found before, in the order of the log
+     * @return restored state, empty if there was no log
+     * @throws IOException              if log could not be read or created
+     * @throws IllegalArgumentException if log belongs to the crawl with other parameters, that has the same hash
+     * @throws IllegalStateException    if the same crawl is already running with this state directory
+     */
+    Snapshot open(final String url, final int depth, final Collection<String> excludes, final Collection<String> hosts,
+                  final Consumer<String> found) throws IOException {
+        final String[] start = {"S", Integer.toString(depth), url, describe(excludes), describe(hosts)};
+        final Path crawlDirectory = Files.createDirectories(directory.resolve(key(start)));
+        lock(crawlDirectory.resolve(LOCK_FILE));
+        log = crawlDirectory.resolve(LOG_FILE);
+        final FileChannel channel = FileChannel.open(log,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+        final long end = lastLineEnd(channel);
+        channel.truncate(end);
+        channel.position(end);
+        if (end > 0) {
+            return replay(start, found);
+        }
+
+        write(record(new StringBuilder(), start), true);
+        return new Snapshot(0, List.of(), List.of(), List.of(), Map.of());
+    }
+
+    private static String describe(final Collection<String> values) {
+        return values == null ? "-" : "+" + String.join("\n", new TreeSet<>(values));
+    }
+
+    /**
+     * Returns name of the crawl subdirectory: first 16 bytes of SHA-256 of the start record in hex
+     */
+    private static String key(final String[] start) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is supported by every Java platform", e);
+        }
+        for (final String field : start) {
+            digest.update(escape(field).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\t');
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+
+    /**
+     * Takes the lock, that is held until {@link #close()}
+     */
+    private void lock(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (final OverlappingFileLockException e) {
+            fileLock = null;
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (fileLock == null) {
+            channel.close();
+            throw new IllegalStateException("crawl is already running with this state directory");
+        }
+        lock = channel;
+    }
+
+    /**
+     * Returns position right after the last line separator of the log, or 0 if there is none
+     */
+    private static long lastLineEnd(final FileChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long end = channel.size();
+        while (end > 0) {
+            final long start = Math.max(0, end - buffer.capacity());
+            buffer.clear().limit((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException("crawl log was truncated while it was read");
+                }
+            }
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    private Snapshot replay(final String[] start, final Consumer<String> found) throws IOException {
+        final int[] finishedLayers = {0};
+        final boolean[] started = {false};
+        readRecords(fields -> {
+            switch (fields[0]) {
+                case "S" -> {
+                    if (fields.length != start.length) {
+                        throw new IllegalArgumentException("state directory contains another crawl");
+                    }
+                    for (int i = 1; i < start.length; i++) {
+                        if (!unescape(fields[i]).equals(start[i])) {
+                            throw new IllegalArgumentException("state directory contains another crawl");
+                        }
+                    }
+                    started[0] = true;
+                }
+                case "L" -> {
+                    if (fields.length == 2) {
+                        finishedLayers[0] = Math.max(finishedLayers[0], Integer.parseInt(fields[1]) + 1);
+                    }
+                }
+                default -> {
+                }
+            }
+        });
+        if (!started[0]) {
+            throw new IllegalArgumentException("state directory contains another crawl");
+        }
+
+        final String currentLayer = Integer.toString(finishedLayers[0]);
+        final String nextLayer = Integer.toString(finishedLayers[0] + 1);
+        final Set<String> current = new LinkedHashSet<>();
+        final Set<String> next = new LinkedHashSet<>();
+        final Set<String> downloaded = new LinkedHashSet<>();
+        final Map<String, IOException> errors = new HashMap<>();
+        readRecords(fields -> {
+            switch (fields[0]) {
+                case "F" -> {
+                    if (fields.length == 3) {
+                        final String link = unescape(fields[2]);
+                        found.accept(link);
+                        if (fields[1].equals(currentLayer)) {
+                            current.add(link);
+                        } else if (fields[1].equals(nextLayer)) {
+                            next.add(link);
+                        }
+                    }
+                }
+                case "E" -> {
+                    if (fields.length == 3) {
+                        errors.put(unescape(fields[1]), new IOException(unescape(fields[2])));
+                    }
+                }
+                case "D" -> {
+                    if (fields.length == 3) {
+                        // url is always found before it is processed
+                        final String link = unescape(fields[1]);
+                        current.remove(link);
+                        if (fields[2].equals("1")) {
+                            downloaded.add(link);
+                        }
+                    }
+                }
+                default -> {
+                }
+            }
+        });
+
+        return new Snapshot(
+                finishedLayers[0],
+                new ArrayList<>(current),
+                new ArrayList<>(next),
+                new ArrayList<>(downloaded),
+                errors
+        );
+    }
+
+    /**
+     * Passes fields of every complete record of the log to the action
+     */
+    private void readRecords(final Consumer<String[]> action) throws IOException {
+        try (final BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.endsWith(TERMINATOR)) {
+                    action.accept(line.substring(0, line.length() - TERMINATOR.length()).split("\t", -1));
+                }
+            }
+        }
+    }
+
+    void found(final int layer, final String url) {
+        write(record(new StringBuilder(), "F", Integer.toString(layer), url), false);
+    }
+
+    void error(final String url, final IOException error) {
+        write(errorRecord(new StringBuilder(), url, error), false);
+    }
+
+    /**
+     * Logs that url is fully processed, with its error and links, that were found first by it
+     *
+     * @param url        processed url
+     * @param downloaded whether url was downloaded
+     * @param error      error of the url or null
+     * @param layer      layer of the found links
+     * @param links      links found by the url
+     */
+    void processed(final String url, final boolean downloaded, final IOException error,
+                   final int layer, final List<String> links) {
+        final StringBuilder records = new StringBuilder();
+        if (error != null) {
+            errorRecord(records, url, error);
+        }
+        final String layerField = Integer.toString(layer);
+        for (final String link : links) {
+            record(records, "F", layerField, link);
+        }
+        write(record(records, "D", url, downloaded ? "1" : "0"), true);
+    }
+
+    void layerFinished(final int layer) {
+        write(record(new StringBuilder(), "L", Integer.toString(layer)), true);
+    }
+
+    private static StringBuilder errorRecord(final StringBuilder records, final String url, final IOException error) {
+        return record(records, "E", url, String.valueOf(error.getMessage()));
+    }
+
+    private static StringBuilder record(final StringBuilder records, final String... fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                records.append('\t');
+            }
+            records.append(escape(fields[i]));
+        }
+        return records.append(TERMINATOR).append(System.lineSeparator());
+    }
+
+    /**
+     * Writes records, that are formatted beforehand, so the lock is held only for copying them to the buffer.
+     * First failure is remembered and reported by {@link #close()}, as crawling itself could go on without the log
+     */
+    private synchronized void write(final CharSequence records, final boolean flush) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            writer.append(records);
+            if (flush) {
+                writer.flush();
+            }
+        } catch (final IOException e) {
+            failure = e;
+        }
+    }
+
+    private static String escape(final String field) {
+        return field.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(final String field) {
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        final StringBuilder result = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            final char c = field.charAt(i);
+            if (c == '\\' && i + 1 < field.length()) {
+                final char escaped = field.charAt(++i);
+                result.append(switch (escaped) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    default -> escaped;
+                });
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Closes the log and releases its lock
+     *
+     * @throws UncheckedIOException if some record could not be written or log could not be closed
+     */
+    @Override
+    public synchronized void close() {
+        closeQuietly(writer);
+        closeQuietly(lock);
+        if (failure != null) {
+            throw new UncheckedIOException("crawl state could not be saved", failure);
+        }
+    }
+
+    /**
+     * Closes resource, if it was opened, and remembers its failure
+     */
+    private void closeQuietly(final Closeable resource) {
+        if (resource == null) {
+            return;
+        }
+        try {
+            resource.close();
+        } catch (final IOException e) {
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+}
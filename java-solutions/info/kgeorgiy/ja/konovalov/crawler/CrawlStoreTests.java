@@ -0,0 +1,229 @@
+package info.kgeorgiy.ja.konovalov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+public class CrawlStoreTests {
+    private static final String URL = "http://a.com/";
+    private static final int DEPTH = 3;
+    
+    @TempDir
+    private Path directory;
+    
+    /**
+     * Comparable view of the snapshot, as errors are compared by identity
+     */
+    private record State(int layer, List<String> current, List<String> next, List<String> downloaded,
+                         Map<String, String> errors, List<String> found) {
+        static State of(final CrawlStore.Snapshot snapshot, final List<String> found) {
+            final Map<String, String> errors = new TreeMap<>();
+            snapshot.errors().forEach((url, error) -> errors.put(url, error.getMessage()));
+            return new State(snapshot.layer(), snapshot.current(), snapshot.next(), snapshot.downloaded(), errors, found);
+        }
+    }
+    
+    private static State open(final Path directory) throws IOException {
+        final List<String> found = new ArrayList<>();
+        try (final CrawlStore store = new CrawlStore(directory)) {
+            return State.of(store.open(URL, DEPTH, null, null, found::add), found);
+        }
+    }
+    
+    /**
+     * Returns log of the only crawl in the directory
+     */
+    private static Path log(final Path directory) throws IOException {
+        try (final Stream<Path> crawls = Files.list(directory)) {
+            final List<Path> logs = crawls.map(crawl -> crawl.resolve("crawl.log")).toList();
+            Assertions.assertEquals(1, logs.size());
+            return logs.get(0);
+        }
+    }
+    
+    /**
+     * Writes a crawl, stopped in the middle of the second layer, with urls that need escaping
+     */
+    private static void writeCrawl(final Path directory) throws IOException {
+        try (final CrawlStore store = new CrawlStore(directory)) {
+            store.open(URL, DEPTH, null, null, url -> Assertions.fail("new log is replayed"));
+            store.found(0, URL);
+            store.processed(URL, true, null, 1, List.of("http://b.com/", "http://c.com/\ttab", "bad url"));
+            store.layerFinished(0);
+            store.processed("bad url", false, new IOException("malformed"), 2, List.of());
+            store.processed("http://b.com/", true, null, 2, List.of("http://d.com/", "http://e.com/\\n"));
+            store.error("http://c.com/\ttab", new IOException("extraction\nfailed"));
+        }
+    }
+    
+    @Test
+    public void replay() throws IOException {
+        writeCrawl(directory);
+        final State state = open(directory);
+        Assertions.assertEquals(1, state.layer());
+        Assertions.assertEquals(List.of("http://c.com/\ttab"), state.current());
+        Assertions.assertEquals(List.of("http://d.com/", "http://e.com/\\n"), state.next());
+        Assertions.assertEquals(List.of(URL, "http://b.com/"), state.downloaded());
+        Assertions.assertEquals(Map.of("bad url", "malformed", "http://c.com/\ttab", "extraction\nfailed"), state.errors());
+        Assertions.assertEquals(List.of(URL, "http://b.com/", "http://c.com/\ttab", "bad url", "http://d.com/", "http://e.com/\\n"),
+                state.found());
+    }
+    
+    @Test
+    public void replayAfterTruncatedLog() throws IOException {
+        writeCrawl(directory);
+        final Path log = log(directory);
+        final byte[] bytes = Files.readAllBytes(log);
+        final String crawl = log.getParent().getFileName().toString();
+        
+        // log cut at any byte is replayed as if it was cut at the end of the last complete line
+        State complete = null;
+        for (int length = 0; length <= bytes.length; length++) {
+            final Path copy = Files.createDirectories(directory.resolve("cut-" + length));
+            Files.write(Files.createDirectories(copy.resolve(crawl)).resolve("crawl.log"), Arrays.copyOf(bytes, length));
+            final State state = open(copy);
+            if (length == 0 || bytes[length - 1] == '\n') {
+                complete = state;
+            } else {
+                Assertions.assertEquals(complete, state, "log cut at " + length);
+            }
+        }
+    }
+    
+    @Test
+    public void appendAfterTornLine() throws IOException {
+        writeCrawl(directory);
+        final Path log = log(directory);
+        Files.writeString(log, "D\thttp://torn", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        
+        try (final CrawlStore store = new CrawlStore(directory)) {
+            store.open(URL, DEPTH, null, null, url -> {});
+            store.processed("http://c.com/\ttab", false, null, 2, List.of("http://f.com/"));
+        }
+        final State state = open(directory);
+        Assertions.assertEquals(List.of(), state.current());
+        Assertions.assertEquals(List.of("http://d.com/", "http://e.com/\\n", "http://f.com/"), state.next());
+        Assertions.assertEquals(List.of(URL, "http://b.com/"), state.downloaded());
+        Assertions.assertFalse(Files.readString(log, StandardCharsets.UTF_8).contains("torn"));
+    }
+    
+    @Test
+    public void crawlsAreStoredSeparately() throws IOException {
+        writeCrawl(directory);
+        final List<String> found = new ArrayList<>();
+        try (final CrawlStore store = new CrawlStore(directory)) {
+            Assertions.assertEquals(0, store.open(URL, DEPTH, Set.of("x"), null, found::add).layer());
+        }
+        try (final CrawlStore store = new CrawlStore(directory)) {
+            Assertions.assertEquals(0, store.open(URL, DEPTH + 1, null, null, found::add).layer());
+        }
+        Assertions.assertEquals(List.of(), found);
+        Assertions.assertEquals(1, open(directory).layer());
+    }
+    
+    @Test
+    public void runningCrawlIsLocked() throws IOException {
+        try (final CrawlStore store = new CrawlStore(directory)) {
+            store.open(URL, DEPTH, null, null, url -> {});
+            Assertions.assertThrows(IllegalStateException.class, () -> open(directory));
+        }
+        Assertions.assertEquals(0, open(directory).layer());
+    }
+    
+    @Test
+    public void finishedCrawlIsNotDownloadedAgain() {
+        final Path state = directory.resolve("state");
+        final CrawlerOptions options = CrawlerOptions.DEFAULT.withStateDirectory(state);
+        final WebCrawlerTests.Outcome expected = WebCrawlerTests.crawl(CrawlerOptions.DEFAULT, new WebCrawlerTests.Graph(500, 4, 0), 5);
+        Assertions.assertEquals(expected, WebCrawlerTests.crawl(options, new WebCrawlerTests.Graph(500, 4, 0), 5));
+        
+        final WebCrawlerTests.Graph graph = new WebCrawlerTests.Graph(500, 4, 0);
+        Assertions.assertEquals(expected, WebCrawlerTests.crawl(options, graph, 5));
+        Assertions.assertEquals(Set.of(), graph.downloaded());
+    }
+    
+    @Test
+    public void resumeAfterStop() throws InterruptedException {
+        final WebCrawlerTests.Outcome expected = WebCrawlerTests.crawl(CrawlerOptions.DEFAULT, new WebCrawlerTests.Graph(500, 4, 0), 5);
+        for (final int stopAfter : List.of(0, 1, 5, 30)) {
+            Assertions.assertTrue(stopAfter < expected.downloaded().size());
+            final Path state = directory.resolve("state-" + stopAfter);
+            final CrawlerOptions options = CrawlerOptions.DEFAULT.withStateDirectory(state);
+            
+            // crawl hangs after a few downloads, until it is checked to be locked
+            final WebCrawlerTests.Graph stopped = new WebCrawlerTests.Graph(500, 4, 0);
+            final AtomicInteger downloads = new AtomicInteger();
+            final CountDownLatch hung = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final Downloader hanging = url -> {
+                if (downloads.incrementAndGet() > stopAfter) {
+                    hung.countDown();
+                    try {
+                        release.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IOException("stopped");
+                }
+                return stopped.download(url);
+            };
+            try (var crawler = new WebCrawler(hanging, 4, 4, 3, options)) {
+                final Thread thread = new Thread(() -> {
+                    try {
+                        crawler.download(stopped.url(0), 5);
+                    } finally {
+                        hung.countDown();
+                    }
+                });
+                thread.start();
+                hung.await();
+                Assertions.assertThrows(IllegalStateException.class,
+                        () -> WebCrawlerTests.crawl(options, new WebCrawlerTests.Graph(500, 4, 0), 5));
+                
+                // copy of the log is what a crashed crawl leaves
+                final Path copy = directory.resolve("copy-" + stopAfter);
+                copyLogs(state, copy);
+                release.countDown();
+                thread.join();
+                
+                final WebCrawlerTests.Graph resumed = new WebCrawlerTests.Graph(500, 4, 0);
+                Assertions.assertEquals(expected, WebCrawlerTests.crawl(CrawlerOptions.DEFAULT.withStateDirectory(copy), resumed, 5),
+                        "stopped after " + stopAfter);
+            }
+        }
+    }
+    
+    private static void copyLogs(final Path from, final Path to) {
+        try (final Stream<Path> crawls = Files.list(from)) {
+            for (final Path crawl : crawls.toList()) {
+                final Path target = Files.createDirectories(to.resolve(crawl.getFileName()));
+                Files.copy(crawl.resolve("crawl.log"), target.resolve("crawl.log"));
+            }
+        } catch (final IOException e) {
+            Assertions.fail(e);
+        }
+    }
+    
+    @Test
+    public void stateDirectoryRequiresLayeredMode() {
+        final CrawlerOptions options = CrawlerOptions.DEFAULT.withStateDirectory(directory).withPipelined(true);
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new WebCrawler(new WebCrawlerTests.Graph(10, 1, 0), 1, 1, 1, options));
+    }
+}
@@ -0,0 +1,229 @@
+package info.kgeorgiy.ja.konovalov.crawler;
+
+import java.nio.file.Path;
+
+/**
+ * Immutable set of optional {@link WebCrawler} modes, every {@code with} method returns changed copy.
+ * {@link #DEFAULT} options give the same behaviour as the plain {@link WebCrawler} constructor.
+ */
+public final class CrawlerOptions {
+    /**
+     * Options with all the modes turned off
+     */
+    public static final CrawlerOptions DEFAULT = new CrawlerOptions(false, false, Integer.MAX_VALUE, null, 0, 0, null, false);
+
+    private final boolean pipelined;
+    private final boolean virtualDownloaders;
+    private final int downloadLimit;
+    private final Path stateDirectory;
+    private final long bloomExpectedUrls;
+    private final double bloomFalsePositiveProbability;
+    private final Path exactVisitedDirectory;
+    private final boolean canonicalUrls;
+
+    private CrawlerOptions(final boolean pipelined, final boolean virtualDownloaders, final int downloadLimit,
+                           final Path stateDirectory, final long bloomExpectedUrls,
+                           final double bloomFalsePositiveProbability, final Path exactVisitedDirectory,
+                           final boolean canonicalUrls) {
+        this.pipelined = pipelined;
+        this.virtualDownloaders = virtualDownloaders;
+        this.downloadLimit = downloadLimit;
+        this.stateDirectory = stateDirectory;
+        this.bloomExpectedUrls = bloomExpectedUrls;
+        this.bloomFalsePositiveProbability = bloomFalsePositiveProbability;
+        this.exactVisitedDirectory = exactVisitedDirectory;
+        this.canonicalUrls = canonicalUrls;
+    }
+
+    /**
+     * Returns whether pages are crawled without layer barriers
+     *
+     * @return true if crawling is pipelined
+     * @see #withPipelined(boolean)
+     */
+    public boolean pipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Sets pipelined mode. In this mode every url carries its remaining depth and is downloaded
+     * as soon as it is extracted, instead of waiting for the whole layer to finish.
+     * Result is the same as in layered mode, every page is downloaded once. Links are extracted from pages
+     * of the last layer too, and kept in memory, as a shorter path to such page could be found later.
+     *
+     * @param pipelined whether crawling should be pipelined
+     * @return changed copy of the options
+     */
+    public CrawlerOptions withPipelined(final boolean pipelined) {
+        return new CrawlerOptions(pipelined, virtualDownloaders, downloadLimit, stateDirectory,
+                bloomExpectedUrls, bloomFalsePositiveProbability, exactVisitedDirectory, canonicalUrls);
+    }
+
+    /**
+     * Returns whether every download runs in its own virtual thread
+     *
+     * @return true if downloads run in virtual threads
+     * @see #withVirtualDownloaders(boolean)
+     */
+    public boolean virtualDownloaders() {
+        return virtualDownloaders;
+    }
+
+    /**
+     * Sets virtual downloaders mode. In this mode {@code downloaders} argument of {@link WebCrawler}
+     * is ignored and every download gets its own virtual thread, so number of simultaneous downloads
+     * is bounded only by {@code perHost} and {@link #withDownloadLimit(int) download limit}.
+     *
+     * @param virtualDownloaders whether downloads should run in virtual threads
+     * @return changed copy of the options
+     */
+    public CrawlerOptions withVirtualDownloaders(final boolean virtualDownloaders) {
+        return new CrawlerOptions(pipelined, virtualDownloaders, downloadLimit, stateDirectory,
+                bloomExpectedUrls, bloomFalsePositiveProbability, exactVisitedDirectory, canonicalUrls);
+    }
+
+    /**
+     * Returns maximum number of simultaneous downloads over all hosts
+     *
+     * @return download limit, {@link Integer#MAX_VALUE} if there is no limit
+     */
+    public int downloadLimit() {
+        return downloadLimit;
+    }
+
+    /**
+     * Sets maximum number of simultaneous downloads over all hosts, in addition to the {@code perHost} bound.
+     * Mostly useful with {@link #withVirtualDownloaders(boolean) virtual downloaders}.
+     *
+     * @param downloadLimit maximum number of simultaneous downloads, should be positive
+     * @return changed copy of the options
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    public CrawlerOptions withDownloadLimit(final int downloadLimit) {
+        if (downloadLimit <= 0) {
+            throw new IllegalArgumentException("download limit should be positive");
+        }
+        return new CrawlerOptions(pipelined, virtualDownloaders, downloadLimit, stateDirectory,
+                bloomExpectedUrls, bloomFalsePositiveProbability, exactVisitedDirectory, canonicalUrls);
+    }
+
+    /**
+     * Returns directory where state of the crawl is stored
+     *
+     * @return state directory or null, if state is kept only in memory
+     * @see #withStateDirectory(Path)
+     */
+    public Path stateDirectory() {
+        return stateDirectory;
+    }
+
+    /**
+     * Sets directory where state of the crawl is stored: found urls of every layer, processed urls and errors.
+     * Crawl that was stopped, even by crash of the process, is resumed by a new {@link WebCrawler}
+     * with the same state directory, when it is asked to download the same url with the same depth,
+     * excludes and hosts. Crawls with other parameters are stored separately in the same directory.
+     * The same crawl could not run twice at a time, the second one fails with {@link IllegalStateException}.
+     * Supported only in layered mode.
+     *
+     * @param stateDirectory directory of the crawl state or null to keep state only in memory
+     * @return changed copy of the options
+     */
+    public CrawlerOptions withStateDirectory(final Path stateDirectory) {
+        return new CrawlerOptions(pipelined, virtualDownloaders, downloadLimit, stateDirectory,
+                bloomExpectedUrls, bloomFalsePositiveProbability, exactVisitedDirectory, canonicalUrls);
+    }
+
+    /**
+     * Returns expected number of urls of the Bloom filter
+     *
+     * @return expected number of urls or 0, if found urls are kept in a hash set
+     * @see #withBloomFilter(long, double)
+     */
+    public long bloomExpectedUrls() {
+        return bloomExpectedUrls;
+    }
+
+    /**
+     * Returns probability of the Bloom filter to report new url as found
+     *
+     * @return false positive probability
+     * @see #withBloomFilter(long, double)
+     */
+    public double bloomFalsePositiveProbability() {
+        return bloomFalsePositiveProbability;
+    }
+
+    /**
+     * Keeps found urls in a Bloom filter, that takes a few bytes per url instead of the url string.
+     * Filter is approximate: with the given probability new url is considered as already found
+     * and is not downloaded, unless {@link #withExactVisitedDirectory(Path) exact check} is enabled.
+     * Supported only in layered mode.
+     *
+     * @param expectedUrls             expected number of found urls, should be positive
+     * @param falsePositiveProbability probability of skipping a new url, should be in (0, 1)
+     * @return changed copy of the options
+     * @throws IllegalArgumentException if any of the parameters is invalid
+     */
+    public CrawlerOptions withBloomFilter(final long expectedUrls, final double falsePositiveProbability) {
+        if (expectedUrls <= 0) {
+            throw new IllegalArgumentException("expected number of urls should be positive");
+        }
+        if (!(falsePositiveProbability > 0 && falsePositiveProbability < 1)) {
+            throw new IllegalArgumentException("false positive probability should be in (0, 1)");
+        }
+        return new CrawlerOptions(pipelined, virtualDownloaders, downloadLimit, stateDirectory,
+                expectedUrls, falsePositiveProbability, exactVisitedDirectory, canonicalUrls);
+    }
+
+    /**
+     * Returns directory of the exact check of the Bloom filter
+     *
+     * @return directory or null, if Bloom filter is approximate
+     * @see #withExactVisitedDirectory(Path)
+     */
+    public Path exactVisitedDirectory() {
+        return exactVisitedDirectory;
+    }
+
+    /**
+     * Makes {@link #withBloomFilter(long, double) Bloom filter} exact: found urls are also written to a file
+     * in the given directory, while only their fingerprints with file offsets are kept in memory,
+     * and urls, that filter considers found, are checked against records of the same fingerprint.
+     * File is deleted, when crawl finishes. Bloom filter should be enabled before.
+     *
+     * @param exactVisitedDirectory directory for found urls or null, if Bloom filter should be approximate
+     * @return changed copy of the options
+     * @throws IllegalArgumentException if directory is given, while Bloom filter is not enabled
+     */
+    public CrawlerOptions withExactVisitedDirectory(final Path exactVisitedDirectory) {
+        if (exactVisitedDirectory != null && bloomExpectedUrls == 0) {
+            throw new IllegalArgumentException("exact check could be enabled only for bloom filter");
+        }
+        return new CrawlerOptions(pipelined, virtualDownloaders, downloadLimit, stateDirectory,
+                bloomExpectedUrls, bloomFalsePositiveProbability, exactVisitedDirectory, canonicalUrls);
+    }
+
+    /**
+     * Returns whether urls are brought to canonical form before deduplication
+     *
+     * @return true if urls are canonicalized
+     * @see #withCanonicalUrls(boolean)
+     */
+    public boolean canonicalUrls() {
+        return canonicalUrls;
+    }
+
+    /**
+     * Brings found urls to canonical form, before checking whether they were already found:
+     * scheme and host are lower-cased, fragment and default port are removed, {@code .} and {@code ..}
+     * path segments are resolved. So {@code http://a/x}, {@code http://a/x#frag} and {@code HTTP://A/y/../x}
+     * are downloaded only once, as {@code http://a/x}. Downloaded urls and errors are reported in canonical form.
+     *
+     * @param canonicalUrls whether urls should be canonicalized
+     * @return changed copy of the options
+     */
+    public CrawlerOptions withCanonicalUrls(final boolean canonicalUrls) {
+        return new CrawlerOptions(pipelined, virtualDownloaders, downloadLimit, stateDirectory,
+                bloomExpectedUrls, bloomFalsePositiveProbability, exactVisitedDirectory, canonicalUrls);
+    }
+}
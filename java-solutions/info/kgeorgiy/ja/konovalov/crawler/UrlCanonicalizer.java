@@ -0,0 +1,156 @@
+package info.kgeorgiy.ja.konovalov.crawler;
+
+/**
+ * Brings urls to canonical form, so different spellings of the same page are found only once:
+ * <ul>
+ *     <li>scheme and host are lower-cased</li>
+ *     <li>fragment is removed</li>
+ *     <li>default port of http and https is removed</li>
+ *     <li>{@code .} and {@code ..} path segments are resolved, empty path becomes {@code /}</li>
+ * </ul>
+ * Percent-encoding and query are left as is. Url, that is already canonical, is returned without copying,
+ * strings that do not look like hierarchical urls are returned unchanged.
+ */
+final class UrlCanonicalizer {
+    private UrlCanonicalizer() {
+    }
+    
+    static String canonicalize(final String url) {
+        final int schemeEnd = url.indexOf("://");
+        if (schemeEnd <= 0) {
+            return url;
+        }
+        final int authorityStart = schemeEnd + 3;
+        final int fragmentStart = indexOf(url, '#', authorityStart, url.length());
+        final int queryStart = indexOf(url, '?', authorityStart, fragmentStart);
+        final int pathStart = indexOf(url, '/', authorityStart, queryStart);
+        
+        final int userInfoEnd = lastIndexOf(url, '@', authorityStart, pathStart);
+        final int hostStart = userInfoEnd < 0 ? authorityStart : userInfoEnd + 1;
+        final int portStart = hostPortSeparator(url, hostStart, pathStart);
+        final boolean defaultPort = portStart >= 0 && isDefaultPort(url, schemeEnd, portStart + 1, pathStart);
+        final int hostEnd = portStart >= 0 ? portStart : pathStart;
+        
+        final boolean canonical = fragmentStart == url.length()
+                && !defaultPort
+                && pathStart < queryStart
+                && isLowerCase(url, 0, schemeEnd)
+                && isLowerCase(url, hostStart, hostEnd)
+                && !hasDotSegments(url, pathStart, queryStart);
+        if (canonical) {
+            return url;
+        }
+        
+        final StringBuilder result = new StringBuilder(fragmentStart + 1);
+        appendLowerCase(result, url, 0, schemeEnd);
+        result.append(url, schemeEnd, hostStart);
+        appendLowerCase(result, url, hostStart, hostEnd);
+        if (!defaultPort) {
+            result.append(url, hostEnd, pathStart);
+        }
+        if (pathStart == queryStart) {
+            result.append('/');
+        } else {
+            appendPath(result, url, pathStart, queryStart);
+        }
+        result.append(url, queryStart, fragmentStart);
+        return result.toString();
+    }
+    
+    private static int indexOf(final String url, final char c, final int from, final int to) {
+        final int index = url.indexOf(c, from);
+        return index < 0 || index > to ? to : index;
+    }
+    
+    private static int lastIndexOf(final String url, final char c, final int from, final int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (url.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Finds colon before the port, ignoring colons of IPv6 address in brackets
+     */
+    private static int hostPortSeparator(final String url, final int hostStart, final int hostEnd) {
+        final int bracket = lastIndexOf(url, ']', hostStart, hostEnd);
+        return lastIndexOf(url, ':', bracket < 0 ? hostStart : bracket, hostEnd);
+    }
+    
+    private static boolean isDefaultPort(final String url, final int schemeEnd, final int from, final int to) {
+        return from == to
+                || isRegion(url, 0, schemeEnd, "http") && isRegion(url, from, to, "80")
+                || isRegion(url, 0, schemeEnd, "https") && isRegion(url, from, to, "443");
+    }
+    
+    private static boolean isRegion(final String url, final int from, final int to, final String expected) {
+        return to - from == expected.length() && url.regionMatches(true, from, expected, 0, expected.length());
+    }
+    
+    private static boolean isLowerCase(final String url, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            final char c = url.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static void appendLowerCase(final StringBuilder result, final String url, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            final char c = url.charAt(i);
+            result.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+    }
+    
+    private static boolean hasDotSegments(final String url, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (url.charAt(i) == '/' && dotSegmentLength(url, i + 1, to) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns number of dots, if segment starting at the given index is {@code .} or {@code ..}, and 0 otherwise
+     */
+    private static int dotSegmentLength(final String url, final int from, final int to) {
+        int dots = 0;
+        while (from + dots < to && dots < 3 && url.charAt(from + dots) == '.') {
+            dots++;
+        }
+        final boolean segmentEnd = from + dots == to || url.charAt(from + dots) == '/';
+        return dots > 0 && dots <= 2 && segmentEnd ? dots : 0;
+    }
+    
+    /**
+     * Appends path without dot segments, path starts with slash
+     */
+    private static void appendPath(final StringBuilder result, final String url, final int from, final int to) {
+        final int pathStart = result.length();
+        int i = from;
+        while (i < to) {
+            // url.charAt(i) is always a slash here
+            final int segmentEnd = indexOf(url, '/', i + 1, to);
+            final int dots = dotSegmentLength(url, i + 1, to);
+            if (dots == 2) {
+                final int lastSlash = result.lastIndexOf("/");
+                result.setLength(Math.max(pathStart, lastSlash));
+            }
+            if (dots == 0) {
+                result.append(url, i, segmentEnd);
+            } else if (segmentEnd == to) {
+                // trailing dot segment keeps the directory
+                result.append('/');
+            }
+            i = segmentEnd;
+        }
+        if (result.length() == pathStart) {
+            result.append('/');
+        }
+    }
+}
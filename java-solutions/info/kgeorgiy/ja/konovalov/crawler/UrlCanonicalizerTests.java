@@ -0,0 +1,86 @@
+package info.kgeorgiy.ja.konovalov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class UrlCanonicalizerTests {
+    private static void assertCanonical(final String expected, final String url) {
+        Assertions.assertEquals(expected, UrlCanonicalizer.canonicalize(url), url);
+        Assertions.assertEquals(expected, UrlCanonicalizer.canonicalize(expected), "canonical form is not stable");
+    }
+    
+    @Test
+    public void caseFolding() {
+        assertCanonical("http://a/x", "HTTP://A/x");
+        assertCanonical("https://host.com/P/Q?X=Y", "HttpS://Host.COM/P/Q?X=Y");
+        assertCanonical("http://User@host.com:81/P/Q", "http://User@Host.COM:81/P/Q");
+    }
+    
+    @Test
+    public void defaultPort() {
+        assertCanonical("http://a/b/c/", "http://A:80/b/c/");
+        assertCanonical("https://a/", "https://a:443/");
+        assertCanonical("https://a:8443/", "https://a:8443/");
+        assertCanonical("http://a:443/", "http://a:443/");
+        assertCanonical("http://[::1]/x", "http://[::1]:80/x");
+        assertCanonical("http://[::1]/x", "http://[::1]/x");
+    }
+    
+    @Test
+    public void dotSegments() {
+        assertCanonical("http://a/x", "http://a/x/../x");
+        assertCanonical("http://a/b/c/", "http://a/b/./c/");
+        assertCanonical("http://a/b/", "http://a/b/c/..");
+        assertCanonical("http://a/b/c/", "http://a/b/c/.");
+        assertCanonical("http://a/x", "http://a/../../x");
+        assertCanonical("http://a/.hidden/..x/...", "http://a/.hidden/..x/...");
+        assertCanonical("http://a/b?x=/../", "http://a/b?x=/../");
+    }
+    
+    @Test
+    public void fragment() {
+        assertCanonical("http://a/x", "http://a/x#frag");
+        assertCanonical("http://a/b?x=/../", "http://a/b?x=/../#f");
+        assertCanonical("http://a/", "http://a#");
+    }
+    
+    @Test
+    public void emptyPath() {
+        assertCanonical("http://a/", "http://a");
+        assertCanonical("http://a/?q=1", "http://a?q=1");
+    }
+    
+    @Test
+    public void notHierarchical() {
+        assertCanonical("mailto:someone", "mailto:someone");
+        assertCanonical("bad url", "bad url");
+        assertCanonical("", "");
+    }
+    
+    @Test
+    public void canonicalIsNotCopied() {
+        final String url = "http://a.com/x/y?q=1";
+        Assertions.assertSame(url, UrlCanonicalizer.canonicalize(url));
+    }
+    
+    @Test
+    public void crawlDownloadsSpellingsOnce() {
+        final String page = "http://a.com/x";
+        final List<String> spellings = List.of(page, "http://a.com/x#frag", "HTTP://A.COM/y/../x", "http://a.com:80/./x");
+        final List<String> downloads = new CopyOnWriteArrayList<>();
+        final Downloader downloader = url -> {
+            downloads.add(url);
+            return () -> url.equals("http://a.com/") ? spellings : List.of();
+        };
+        try (var crawler = new WebCrawler(downloader, 4, 4, 4, CrawlerOptions.DEFAULT.withCanonicalUrls(true))) {
+            final WebCrawlerTests.Outcome outcome = WebCrawlerTests.Outcome.of(crawler.download("HTTP://a.com", 3));
+            Assertions.assertEquals(Set.of("http://a.com/", page), outcome.downloaded());
+        }
+        Assertions.assertEquals(2, downloads.size(), downloads.toString());
+    }
+}
@@ -0,0 +1,21 @@
+package info.kgeorgiy.ja.konovalov.crawler;
+
+/**
+ * Set of urls found during a crawl, that only supports adding
+ */
+@FunctionalInterface
+interface VisitedUrls {
+    /**
+     * Adds url to the set
+     *
+     * @param url url to add
+     * @return true if url was not in the set
+     */
+    boolean add(String url);
+    
+    /**
+     * Releases resources of the set, it is not used after that
+     */
+    default void close() {
+    }
+}
@@ -8,6 +8,7 @@ import info.kgeorgiy.java.advanced.crawler.Result;
 import info.kgeorgiy.java.advanced.crawler.URLUtils;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -17,6 +18,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Phaser;
@@ -41,6 +43,8 @@ public class WebCrawler implements AdvancedCrawler {
     private final ExecutorService extractersPool;
     private final ConcurrentHashMap<String, HostQueue> hostOracle = new ConcurrentHashMap<>();
     private final int maxPerHost;
+    private final CrawlerOptions options;
+    private final Semaphore downloadLimit;
     
     
     private final class HostQueue {
@@ -69,26 +73,69 @@ public class WebCrawler implements AdvancedCrawler {
         }
     }
     
+    /**
+     * State of a page in pipelined mode, guarded by its own monitor
+     */
+    private static final class PageState {
+        private int remaining;
+        /*
+         * Extracted links, that are propagated once again, if remaining depth is increased
+         */
+        private List<String> links = null;
+        /*
+         * Extraction failure, that is not reported yet, as remaining depth was 1
+         */
+        private IOException error = null;
+        
+        private PageState(final int remaining) {
+            this.remaining = remaining;
+        }
+    }
+    
     private final class DownloadQueryHelper {
         private final ConcurrentLinkedQueue<String> downloaded = new ConcurrentLinkedQueue<>();
         private final ConcurrentMap<String, IOException> errors = new ConcurrentHashMap<>();
-        private final Set<String> found = ConcurrentHashMap.newKeySet();
+        private final VisitedUrls found = createVisitedUrls();
         private final Set<String> usedHosts = ConcurrentHashMap.newKeySet();
         private final Set<String> excludes;
         private final List<String> hosts;
         private final Phaser barrier = new Phaser(1);
         private Queue<String> currentLayerLinks = new ConcurrentLinkedQueue<>();
         private Queue<String> nextLayerLinks = new ConcurrentLinkedQueue<>();
+        private final String startingUrl;
         private int depth;
+        private int layer = 0;
+        private final CrawlStore store;
+        
+        /*
+         * Pipelined mode state: pages by url, number of scheduled but not finished tasks
+         * and latch that is opened when there are no tasks left.
+         */
+        private final ConcurrentMap<String, PageState> pages = new ConcurrentHashMap<>();
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final CountDownLatch finished = new CountDownLatch(1);
         
         DownloadQueryHelper(final String startingUrl, final int depth, final Set<String> excludes, final List<String> hosts) {
+            this.startingUrl = startingUrl;
             this.depth = depth;
             this.excludes = excludes;
-            if (checkString(startingUrl)) {
-                currentLayerLinks.add(startingUrl);
-                found.add(startingUrl);
-            }
             this.hosts = hosts;
+            this.store = options.stateDirectory() == null ? null : new CrawlStore(options.stateDirectory());
+        }
+        
+        private VisitedUrls createVisitedUrls() {
+            if (options.bloomExpectedUrls() == 0) {
+                return ConcurrentHashMap.<String>newKeySet()::add;
+            }
+            return new BloomVisitedUrls(
+                    options.bloomExpectedUrls(),
+                    options.bloomFalsePositiveProbability(),
+                    options.exactVisitedDirectory()
+            );
+        }
+        
+        private String canonical(final String url) {
+            return options.canonicalUrls() ? UrlCanonicalizer.canonicalize(url) : url;
         }
         
         private boolean checkString(final String str) {
@@ -96,6 +143,33 @@ public class WebCrawler implements AdvancedCrawler {
         }
         
         public Result getResult() {
+            if (options.pipelined()) {
+                crawlPipelined();
+            } else {
+                try {
+                    crawlByLayers();
+                } finally {
+                    found.close();
+                    if (store != null) {
+                        store.close();
+                    }
+                }
+            }
+            
+            clearUsedHosts();
+            return new Result(new ArrayList<>(downloaded), errors);
+        }
+        
+        private void crawlByLayers() {
+            if (store != null) {
+                restore();
+            }
+            final String start = canonical(startingUrl);
+            if (checkString(start) && found.add(start)) {
+                currentLayerLinks.add(start);
+                logFound(0, start);
+            }
+            
             while (depth > 0) {
                 --depth;
                 
@@ -105,6 +179,10 @@ public class WebCrawler implements AdvancedCrawler {
                 });
                 
                 barrier.arriveAndAwaitAdvance();
+                if (store != null) {
+                    store.layerFinished(layer);
+                }
+                ++layer;
                 
                 currentLayerLinks = nextLayerLinks;
                 /* heuristic, could be used to speedup downloads, less time for Host management will be used
@@ -116,9 +194,45 @@ public class WebCrawler implements AdvancedCrawler {
                  */
                 nextLayerLinks = new ConcurrentLinkedQueue<>();
             }
-            
-            clearUsedHosts();
-            return new Result(new ArrayList<>(downloaded), errors);
+        }
+        
+        /**
+         * Opens the store and continues crawl from the first unfinished layer
+         */
+        private void restore() {
+            final CrawlStore.Snapshot snapshot;
+            try {
+                snapshot = store.open(startingUrl, depth, excludes, hosts, found::add);
+            } catch (final IOException e) {
+                throw new UncheckedIOException("crawl state could not be read", e);
+            }
+            layer = snapshot.layer();
+            depth -= layer;
+            downloaded.addAll(snapshot.downloaded());
+            errors.putAll(snapshot.errors());
+            currentLayerLinks.addAll(snapshot.current());
+            nextLayerLinks.addAll(snapshot.next());
+        }
+        
+        private void logFound(final int layer, final String url) {
+            if (store != null) {
+                store.found(layer, url);
+            }
+        }
+        
+        private void logError(final String url, final IOException e) {
+            if (store != null) {
+                store.error(url, e);
+            }
+        }
+        
+        /**
+         * Logs processed url with its error and links, that it has found first, those belong to the next layer
+         */
+        private void logProcessed(final String url, final boolean downloaded, final IOException error, final List<String> links) {
+            if (store != null) {
+                store.processed(url, downloaded, error, layer + 1, links);
+            }
         }
         
         private void downloadAndSendToExtractors(final String url) {
@@ -128,6 +242,31 @@ public class WebCrawler implements AdvancedCrawler {
                 return;
             }
             
+            submitDownload(host, () -> {
+                try {
+                    final var document = downloader.download(url);
+                    downloaded.add(url);
+                    usedHosts.add(host);
+                    if (depth > 0) {
+                        barrier.register();
+                        extractersPool.submit(() -> extractLinks(document, url));
+                    } else {
+                        logProcessed(url, true, null, List.of());
+                    }
+                } catch (final IOException e) {
+                    errors.put(url, e);
+                    logProcessed(url, false, e, List.of());
+                } finally {
+                    barrier.arriveAndDeregister();
+                }
+            });
+        }
+        
+        /**
+         * Puts download to the queue of its host, so no more than {@code perHost} pages of a host
+         * are downloaded at once
+         */
+        private void submitDownload(final String host, final Runnable download) {
             final var currentManager = hostOracle.compute(host, (k, v) -> {
                 if (v == null) {
                     return new HostQueue();
@@ -138,25 +277,180 @@ public class WebCrawler implements AdvancedCrawler {
             });
             
             final Semaphore currentSemaphore = currentManager.blocker;
-            final Runnable downloadingFunction = () -> {
+            currentManager.add(() -> {
                 try {
-                    final var document = downloader.download(url);
-                    downloaded.add(url);
-                    usedHosts.add(host);
-                    if (depth > 0) {
-                        barrier.register();
-                        extractersPool.submit(() -> extractLinks(document, url));
+                    if (downloadLimit == null) {
+                        download.run();
+                    } else {
+                        downloadLimit.acquireUninterruptibly();
+                        try {
+                            download.run();
+                        } finally {
+                            downloadLimit.release();
+                        }
                     }
-                } catch (final IOException e) {
-                    errors.put(url, e);
                 } finally {
-                    barrier.arriveAndDeregister();
                     currentSemaphore.release();
                     currentManager.tryNext();
                 }
-            };
+            });
+        }
+        
+        /*
+         * Pipelined mode. Every url is tagged with its remaining depth: number of layers, that it and its descendants
+         * occupy, url with remaining depth 1 is downloaded, but its links are not extracted.
+         * Url is downloaded as soon as it is found. If it is found once again with greater remaining depth,
+         * as a shorter path to it is found later, its links are propagated once again with the new depth.
+         * So every url ends up with the same remaining depth as in layered mode, and the result is the same.
+         * Links are extracted from every downloaded page, even with remaining depth 1, so no page is downloaded twice.
+         * Documents are dropped right after extraction, only extracted links are kept, while depth of the page
+         * could still be increased. Extraction failure of a page with remaining depth 1 is reported only
+         * if its depth is increased, as layered mode does not extract such pages.
+         */
+        
+        private void crawlPipelined() {
+            if (depth > 0) {
+                offer(canonical(startingUrl), depth);
+            }
+            taskFinished();
+            
+            boolean succeeded = false;
+            boolean interrupted = false;
+            while (!succeeded) {
+                try {
+                    finished.await();
+                    succeeded = true;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        private void offer(final String url, final int remaining) {
+            if (!checkString(url)) {
+                return;
+            }
+            
+            final PageState fresh = new PageState(remaining);
+            final PageState state = pages.putIfAbsent(url, fresh);
+            if (state == null) {
+                final String host = getHost(url);
+                if (host != null) {
+                    pending.incrementAndGet();
+                    submitDownload(host, () -> downloadPipelined(url, host, fresh));
+                }
+                return;
+            }
+            
+            final List<String> links;
+            final IOException error;
+            synchronized (state) {
+                if (remaining <= state.remaining) {
+                    return;
+                }
+                state.remaining = remaining;
+                links = state.links;
+                error = state.error;
+                state.error = null;
+                releaseLinksIfFinal(state);
+            }
             
-            currentManager.add(downloadingFunction);
+            if (error != null) {
+                errors.put(url, error);
+            } else if (links != null) {
+                pending.incrementAndGet();
+                extractersPool.submit(() -> {
+                    try {
+                        propagate(links, remaining);
+                    } finally {
+                        taskFinished();
+                    }
+                });
+            }
+            // otherwise download or extraction is in progress and would see new depth, or download has failed
+        }
+        
+        private void downloadPipelined(final String url, final String host, final PageState state) {
+            try {
+                final Document document = downloader.download(url);
+                downloaded.add(url);
+                usedHosts.add(host);
+                submitExtraction(url, document, state);
+            } catch (final IOException e) {
+                errors.put(url, e);
+            } finally {
+                taskFinished();
+            }
+        }
+        
+        /**
+         * Extracts links and propagates them, document is not referenced after that.
+         * If depth of the page was increased during propagation, links are propagated once again,
+         * otherwise they are kept in the page state, unless its depth is final.
+         */
+        private void submitExtraction(final String url, final Document document, final PageState state) {
+            pending.incrementAndGet();
+            extractersPool.submit(() -> {
+                try {
+                    List<String> links = null;
+                    IOException error = null;
+                    try {
+                        links = document.extractLinks().stream().map(this::canonical).toList();
+                    } catch (final IOException e) {
+                        error = e;
+                    }
+                    
+                    // links are propagated only with remaining depth greater than 1
+                    int propagated = 1;
+                    while (true) {
+                        final int current;
+                        synchronized (state) {
+                            current = state.remaining;
+                            if (current <= propagated) {
+                                if (error == null) {
+                                    state.links = links;
+                                    releaseLinksIfFinal(state);
+                                } else if (propagated == 1) {
+                                    state.error = error;
+                                }
+                                break;
+                            }
+                        }
+                        if (error == null) {
+                            propagate(links, current);
+                        } else if (propagated == 1) {
+                            errors.put(url, error);
+                        }
+                        propagated = current;
+                    }
+                } finally {
+                    taskFinished();
+                }
+            });
+        }
+        
+        private void propagate(final List<String> links, final int remaining) {
+            for (final String link : links) {
+                offer(link, remaining - 1);
+            }
+        }
+        
+        /**
+         * Only the starting url could have the full depth, so page of depth - 1 would never be propagated once again
+         */
+        private void releaseLinksIfFinal(final PageState state) {
+            if (state.remaining >= depth - 1) {
+                state.links = null;
+            }
+        }
+        
+        private void taskFinished() {
+            if (pending.decrementAndGet() == 0) {
+                finished.countDown();
+            }
         }
         
         private String getHost(final String url) {
@@ -168,21 +462,27 @@ public class WebCrawler implements AdvancedCrawler {
                 return currentHost;
             } catch (final MalformedURLException e) {
                 errors.put(url, e);
+                logError(url, e);
                 return null;
             }
         }
         
         private void extractLinks(final Document document, final String url) {
+            final List<String> foundLinks = new ArrayList<>();
+            IOException error = null;
             try {
                 final List<String> links = document.extractLinks();
-                links.forEach(e -> {
+                links.stream().map(this::canonical).forEach(e -> {
                     if (checkString(e) && found.add(e)) {
+                        foundLinks.add(e);
                         nextLayerLinks.add(e);
                     }
                 });
             } catch (final IOException e) {
                 errors.put(url, e);
+                error = e;
             } finally {
+                logProcessed(url, true, error, foundLinks);
                 barrier.arriveAndDeregister();
             }
         }
@@ -206,10 +506,36 @@ public class WebCrawler implements AdvancedCrawler {
      * @throws IllegalArgumentException if any of the parameters is invalid i.e. downloader is null or some number is negative
      */
     public WebCrawler(final Downloader downloader, final int downloaders, final int extractors, final int perHost) throws IllegalArgumentException {
+        this(downloader, downloaders, extractors, perHost, CrawlerOptions.DEFAULT);
+    }
+    
+    /**
+     * Creates WebCrawler with given bounds and optional modes
+     *
+     * @param downloader  helper class that downloads pages
+     * @param downloaders maximum number of simultaneously downloaded pages
+     * @param extractors  maximum number of simultaneously being parsed pages
+     * @param perHost     maximum number of simultaneously downloaded pages from single host
+     * @param options     optional crawling modes
+     * @throws IllegalArgumentException if any of the parameters is invalid i.e. downloader is null or some number is negative
+     */
+    public WebCrawler(final Downloader downloader, final int downloaders, final int extractors, final int perHost,
+                      final CrawlerOptions options) throws IllegalArgumentException {
         Objects.requireNonNull(downloader, "provided downloader should not be null");
+        Objects.requireNonNull(options, "provided options should not be null");
+        if (options.pipelined() && options.stateDirectory() != null) {
+            throw new IllegalArgumentException("crawl state could be stored only in layered mode");
+        }
+        if (options.pipelined() && options.bloomExpectedUrls() != 0) {
+            throw new IllegalArgumentException("bloom filter could be used only in layered mode");
+        }
         checkParameters(downloaders, extractors, perHost);
         this.downloader = downloader;
-        downloadersPool = Executors.newFixedThreadPool(downloaders);
+        this.options = options;
+        downloadersPool = options.virtualDownloaders()
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(downloaders);
+        downloadLimit = options.downloadLimit() == Integer.MAX_VALUE ? null : new Semaphore(options.downloadLimit());
         extractersPool = Executors.newFixedThreadPool(extractors);
         maxPerHost = perHost;
     }
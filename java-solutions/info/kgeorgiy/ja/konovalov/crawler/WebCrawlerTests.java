@@ -0,0 +1,185 @@
+package info.kgeorgiy.ja.konovalov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class WebCrawlerTests {
+    private static final int PAGES = 400;
+    private static final int DEPTH = 5;
+    private static final List<Long> SEEDS = List.of(1L, 2L, 3L, 4L, 5L);
+    private static final Set<String> EXCLUDES = Set.of("p1", "h3.");
+    private static final List<String> HOSTS = List.of("h0.com", "h1.com", "h5.com", "h7.com");
+    
+    /**
+     * Deterministic random graph of pages, some of which fail to download or to extract links
+     */
+    static final class Graph implements Downloader {
+        private final int pages;
+        private final long seed;
+        private final int delayMicros;
+        private final Set<String> downloaded = ConcurrentHashMap.newKeySet();
+        private final Set<String> downloadedTwice = ConcurrentHashMap.newKeySet();
+        
+        Graph(final int pages, final long seed, final int delayMicros) {
+            this.pages = pages;
+            this.seed = seed;
+            this.delayMicros = delayMicros;
+        }
+        
+        String url(final int page) {
+            return "http://h" + page % 37 + ".com/p" + page;
+        }
+        
+        Set<String> downloaded() {
+            return downloaded;
+        }
+        
+        Set<String> downloadedTwice() {
+            return downloadedTwice;
+        }
+        
+        @Override
+        public Document download(final String url) throws IOException {
+            if (!downloaded.add(url)) {
+                downloadedTwice.add(url);
+            }
+            final int page = Integer.parseInt(url.substring(url.lastIndexOf('p') + 1));
+            if (delayMicros > 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(ThreadLocalRandom.current().nextInt(delayMicros)));
+            }
+            final Random random = new Random(seed * 31 + page);
+            if (random.nextInt(20) == 0) {
+                throw new IOException("failed to download " + url);
+            }
+            final boolean extractionFails = random.nextInt(25) == 0;
+            final List<String> links = new ArrayList<>();
+            final int count = random.nextInt(6);
+            for (int i = 0; i < count; i++) {
+                links.add(url(random.nextInt(pages)));
+            }
+            if (random.nextInt(10) == 0) {
+                links.add("bad url " + page);
+            }
+            return () -> {
+                if (extractionFails) {
+                    throw new IOException("failed to extract links of " + url);
+                }
+                return links;
+            };
+        }
+    }
+    
+    /**
+     * Downloaded urls and urls with errors of the crawl, checked for duplicates
+     */
+    record Outcome(Set<String> downloaded, Set<String> errors) {
+        static Outcome of(final Result result) {
+            final Set<String> downloaded = new TreeSet<>(result.getDownloaded());
+            Assertions.assertEquals(result.getDownloaded().size(), downloaded.size(), "duplicate downloads");
+            return new Outcome(downloaded, new TreeSet<>(result.getErrors().keySet()));
+        }
+    }
+    
+    static Outcome crawl(final CrawlerOptions options, final Graph graph, final int depth) {
+        try (var crawler = new WebCrawler(graph, 8, 4, 3, options)) {
+            return Outcome.of(crawler.download(graph.url(0), depth));
+        }
+    }
+    
+    /**
+     * Checks that crawl in the given mode gives the same result as the layered one, downloading every page once
+     */
+    static void assertSameAsLayered(final CrawlerOptions options, final int delayMicros) {
+        for (final long seed : SEEDS) {
+            for (int depth = 0; depth <= DEPTH; depth++) {
+                final Outcome expected = crawl(CrawlerOptions.DEFAULT, new Graph(PAGES, seed, 0), depth);
+                final Graph graph = new Graph(PAGES, seed, delayMicros);
+                Assertions.assertEquals(expected, crawl(options, graph, depth), "seed " + seed + ", depth " + depth);
+                Assertions.assertEquals(Set.of(), graph.downloadedTwice());
+            }
+        }
+    }
+    
+    @Test
+    public void pipelinedSameAsLayered() {
+        assertSameAsLayered(CrawlerOptions.DEFAULT.withPipelined(true), 500);
+    }
+    
+    @Test
+    public void pipelinedWithExcludesAndHosts() {
+        final CrawlerOptions pipelined = CrawlerOptions.DEFAULT.withPipelined(true);
+        for (final long seed : SEEDS) {
+            final Graph excluded = new Graph(PAGES, seed, 0);
+            final Graph hosts = new Graph(PAGES, seed, 0);
+            try (var layered = new WebCrawler(new Graph(PAGES, seed, 0), 8, 4, 3);
+                 var crawler = new WebCrawler(excluded, 8, 4, 3, pipelined);
+                 var hostsCrawler = new WebCrawler(hosts, 8, 4, 3, pipelined)) {
+                Assertions.assertEquals(Outcome.of(layered.download(excluded.url(0), DEPTH, EXCLUDES)),
+                        Outcome.of(crawler.download(excluded.url(0), DEPTH, EXCLUDES)));
+                Assertions.assertEquals(Outcome.of(layered.advancedDownload(hosts.url(0), DEPTH, HOSTS)),
+                        Outcome.of(hostsCrawler.advancedDownload(hosts.url(0), DEPTH, HOSTS)));
+            }
+            Assertions.assertEquals(Set.of(), excluded.downloadedTwice());
+            Assertions.assertEquals(Set.of(), hosts.downloadedTwice());
+        }
+    }
+    
+    @Test
+    public void virtualDownloadersSameAsLayered() {
+        assertSameAsLayered(CrawlerOptions.DEFAULT.withVirtualDownloaders(true), 500);
+        assertSameAsLayered(CrawlerOptions.DEFAULT.withVirtualDownloaders(true).withPipelined(true).withDownloadLimit(5), 500);
+    }
+    
+    @Test
+    public void virtualDownloadersAreBoundedByLimit() {
+        for (final int limit : List.of(1, 7, 100)) {
+            final Graph graph = new Graph(3000, 5, 2_000);
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger maxRunning = new AtomicInteger();
+            final AtomicInteger maxPerHost = new AtomicInteger();
+            final ConcurrentHashMap<String, AtomicInteger> perHost = new ConcurrentHashMap<>();
+            final Downloader counting = url -> {
+                final AtomicInteger host = perHost.computeIfAbsent(url.substring(0, url.lastIndexOf('/')), h -> new AtomicInteger());
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                maxPerHost.accumulateAndGet(host.incrementAndGet(), Math::max);
+                try {
+                    return graph.download(url);
+                } finally {
+                    host.decrementAndGet();
+                    running.decrementAndGet();
+                }
+            };
+            // single platform downloader thread would serialize every download
+            final CrawlerOptions options = CrawlerOptions.DEFAULT.withVirtualDownloaders(true).withDownloadLimit(limit);
+            try (var crawler = new WebCrawler(counting, 1, 4, 3, options)) {
+                crawler.download(graph.url(0), 4);
+            }
+            Assertions.assertTrue(maxRunning.get() <= limit, "downloads " + maxRunning.get() + ", limit " + limit);
+            Assertions.assertTrue(maxPerHost.get() <= 3, "downloads per host " + maxPerHost.get());
+            if (limit > 1) {
+                Assertions.assertTrue(maxRunning.get() > 1, "downloads were not parallel");
+            }
+        }
+    }
+    
+    @Test
+    public void invalidDownloadLimit() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CrawlerOptions.DEFAULT.withDownloadLimit(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CrawlerOptions.DEFAULT.withDownloadLimit(-1));
+    }
+}
@@ -0,0 +1,56 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of several lists, that are placed one after another.
+ * Elements are not copied, {@link #get} finds the part by binary search over prefix sizes.
+ * Parts should not be modified after the view is created.
+ *
+ * @param <T> the type of elements in the list
+ */
+class ConcatenatedList<T> extends AbstractList<T> implements RandomAccess {
+    private final List<? extends List<? extends T>> parts;
+    /**
+     * {@code offsets[i]} is the index of the first element of {@code i}-th part, last one is the size of the list
+     */
+    private final int[] offsets;
+    
+    /**
+     * Constructs a view of the given lists.
+     *
+     * @param parts lists to concatenate, should support fast random access
+     */
+    ConcatenatedList(List<? extends List<? extends T>> parts) {
+        this.parts = parts;
+        this.offsets = new int[parts.size() + 1];
+        for (int i = 0; i < parts.size(); i++) {
+            offsets[i + 1] = offsets[i] + parts.get(i).size();
+        }
+    }
+    
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int part = Arrays.binarySearch(offsets, index);
+        if (part < 0) {
+            part = -part - 2;
+        } else {
+            // skips empty parts, that start at the same index
+            while (offsets[part + 1] == index) {
+                part++;
+            }
+        }
+        return parts.get(part).get(index - offsets[part]);
+    }
+    
+    @Override
+    public int size() {
+        return offsets[offsets.length - 1];
+    }
+}
@@ -4,8 +4,13 @@ import info.kgeorgiy.java.advanced.iterative.AdvancedIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.*;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
@@ -18,7 +23,9 @@ public class IterativeParallelism implements AdvancedIP {
     private final ParallelMapper parallelMapper;
 
     /**
-     * Default constructs IterativeParallelism
+     * Default constructs IterativeParallelism, that evaluates every block in its own virtual thread.
+     * Virtual threads are cheap to start and run on the shared carrier pool, so small calls
+     * do not pay for creating platform threads.
      */
     public IterativeParallelism() {
         parallelMapper = null;
@@ -33,19 +40,13 @@ public class IterativeParallelism implements AdvancedIP {
 
 
     /**
-     * Represents an operation(with neutral elements, so basically a monoid-like operation)
-     * that can be performed on a stream of elements.
+     * Represents an operation, that can be performed on a stream of elements in blocks,
+     * with results of blocks combined afterwards.
      *
      * @param <T> the type of the input elements of the operation
      * @param <V> the type of the result of the operation
      */
     private static class Operation<T, V> {
-        /**
-         * Represents a supplier of results with a neutral value. Used
-         *
-         * @see Operation
-         */
-        public final Supplier<V> neutralSupplier;
         /**
          * Represents a function that applies operation on a stream of elements.
          * Designed to be used as mapReduce function most of the cases
@@ -58,17 +59,24 @@ public class IterativeParallelism implements AdvancedIP {
         public final Function<Stream<V>, V> resultsCombiner;
 
         /**
-         * Creates Operation from given supplier, mapper and results-combiner
-         * Represents an operation (with neutral elements, so basically a monoid-like operation)
-         * that can be performed on a stream of elements.
+         * Creates Operation from given mapper and results-combiner
          */
-        public Operation(Supplier<V> neutralSupplier, Function<Stream<? extends T>, V> mapReducer, Function<Stream<V>, V> resultsCombiner) {
-            this.neutralSupplier = neutralSupplier;
+        public Operation(Function<Stream<? extends T>, V> mapReducer, Function<Stream<V>, V> resultsCombiner) {
             this.valuesTransformer = mapReducer;
             this.resultsCombiner = resultsCombiner;
         }
     }
 
+    /**
+     * Contiguous range of indices [from, to), processed by a single thread
+     *
+     * @param index number of the block
+     * @param from  first index of the block, inclusive
+     * @param to    last index of the block, exclusive
+     */
+    private record Block(int index, int from, int to) {
+    }
+
     /**
      * Executes the given operation on a list of values in parallel using multiple threads.
      *
@@ -81,25 +89,54 @@ public class IterativeParallelism implements AdvancedIP {
      * @throws InterruptedException if any of the threads is interrupted during execution
      */
     private <T, V> V parallelize(int threads, List<? extends T> values, Operation<T, V> operation) throws InterruptedException {
-        final List<List<? extends T>> blocks = new ArrayList<>();
-        final List<V> answers = new ArrayList<>();
+        final List<V> answers = evaluateBlocks(threads, values.size(), block ->
+                operation.valuesTransformer.apply(values.subList(block.from(), block.to()).stream())
+        );
+        return operation.resultsCombiner.apply(answers.stream());
+    }
 
+    /**
+     * Same as {@link #evaluateBlocks(int, int, Function, Predicate)} without stop condition
+     */
+    private <V> List<V> evaluateBlocks(int threads, int size, Function<Block, V> blockEvaluator) throws InterruptedException {
+        return evaluateBlocks(threads, size, blockEvaluator, null);
+    }
+
+    /**
+     * Splits indices [0, size) into {@code threads} blocks and evaluates every block in parallel,
+     * either on the {@link ParallelMapper} or on new virtual threads.
+     * If the mapper is {@link ParallelMapperImpl}, blocks that are not started yet are dropped
+     * as soon as some block result satisfies {@code stopCondition}, such blocks have {@code null} results.
+     *
+     * @param threads        the number of concurrent threads to use
+     * @param size           the number of indices to split
+     * @param blockEvaluator function that evaluates a single block
+     * @param stopCondition  condition on block result that makes other blocks unnecessary, {@code null} means never stop
+     * @param <V>            the type of block result
+     * @return results of blocks, in the order of blocks
+     * @throws InterruptedException if any of the threads is interrupted during execution
+     */
+    private <V> List<V> evaluateBlocks(int threads, int size, Function<Block, V> blockEvaluator,
+                                       Predicate<? super V> stopCondition) throws InterruptedException {
+        final List<Block> blocks = new ArrayList<>();
         for (int i = 0; i < threads; i++) {
-            blocks.add(getNthBlockList(values, values.size() % threads, values.size() / threads, i));
-            answers.add(operation.neutralSupplier.get());
+            final int lowerBound = getNthBlockLowerBound(size % threads, size / threads, i);
+            blocks.add(new Block(i, lowerBound, getNthBlockLowerBound(size % threads, size / threads, i + 1)));
         }
 
-        if (parallelMapper != null) {
-            return operation.resultsCombiner.apply(parallelMapper.map((curValues) -> operation.valuesTransformer.apply(curValues.stream()), blocks).stream());
+        if (parallelMapper instanceof ParallelMapperImpl mapper) {
+            return mapper.map(blockEvaluator, blocks, stopCondition);
+        } else if (parallelMapper != null) {
+            return parallelMapper.map(blockEvaluator, blocks);
         }
 
+        final List<V> answers = new ArrayList<>(Collections.nCopies(blocks.size(), null));
         final List<Thread> runningThreads = new ArrayList<>();
         for (int i = 0; i < blocks.size(); ++i) {
             final int finalI = i;
-            runningThreads.add(new Thread(() ->
-                    answers.set(finalI, operation.valuesTransformer.apply(blocks.get(finalI).stream()))
+            runningThreads.add(Thread.ofVirtual().start(() ->
+                    answers.set(finalI, blockEvaluator.apply(blocks.get(finalI)))
             ));
-            runningThreads.getLast().start();
         }
 
         InterruptedException throwExceptionDuringJoins = null;
@@ -127,73 +164,90 @@ public class IterativeParallelism implements AdvancedIP {
             throw throwExceptionDuringJoins;
         }
 
-        return operation.resultsCombiner.apply(answers.stream());
+        return answers;
     }
 
     /**
-     * Returns a sub-list of elements from the specified list that belong to the nth block.
+     * Returns the first index of the nth block, first {@code reminder} blocks are one element longer.
      *
-     * @param <T>         the type of elements in the list
-     * @param list        the list of elements
-     * @param reminder    the result of list.size() % threadsNumber, used to determine bounds
+     * @param reminder    the result of size % threadsNumber
      * @param blockSize   the size of each block
-     * @param blockNumber the index of the block to retrieve
-     * @return a sub-list of elements from the specified list that belong to the nth block
+     * @param blockNumber the index of the block
+     * @return the first index of the block, inclusive
      */
-    private static <T> List<? extends T> getNthBlockList(List<? extends T> list, int reminder, int blockSize, int blockNumber) {
-        int lowerBound = blockSize * blockNumber + Integer.min(blockNumber, reminder);
-        int upperBound = lowerBound + blockSize + (blockNumber < reminder ? 1 : 0);
-        return list.subList(lowerBound, upperBound);
+    private static int getNthBlockLowerBound(int reminder, int blockSize, int blockNumber) {
+        return blockSize * blockNumber + Integer.min(blockNumber, reminder);
     }
 
+    /**
+     * Returns every {@code step}-th element of the list as a random access list.
+     * Random access lists are wrapped, other ones are copied by {@link SteppedList},
+     * as blocks reach their elements by index.
+     */
     private static <T> List<? extends T> wrapToSteps(List<? extends T> values, int step) {
-        return step == 1 ? values : new SteppedList<>(values, step);
+        return step == 1 && values instanceof RandomAccess ? values : new SteppedList<>(values, step);
     }
 
     @Override
     public String join(int threads, List<?> values, int step) throws InterruptedException {
         return collectorsOperation(threads, values, step,
-                String::new,
                 Collectors.mapping(Object::toString, Collectors.joining()),
                 Collectors.joining()
         );
     }
 
     private <T, U> U collectorsOperation(int threads, List<? extends T> values, int step,
-                                         Supplier<U> identitySupplier,
                                          Collector<? super T, ?, U> mappingCollector,
                                          Collector<? super U, ?, U> resultsCollector) throws InterruptedException {
         return parallelize(threads, wrapToSteps(values, step),
                 new Operation<>(
-                        identitySupplier,
                         (Stream<? extends T> s) -> s.collect(mappingCollector),
                         (s -> s.collect(resultsCollector))
                 ));
     }
 
 
-    private <T, U, A> List<U> listTransformingOperation(int threads, List<? extends T> values, int step,
-                                                        Collector<T, A, List<U>> collector) throws InterruptedException {
-        return collectorsOperation(threads, values, step, ArrayList::new, collector,
-                Collectors.flatMapping(List::stream, Collectors.toList())
-        );
-    }
-
+    /**
+     * Filters blocks independently and returns a view of their results, so elements are not copied once again
+     */
     @Override
     public <T> List<T> filter(int threads, List<? extends T> values, Predicate<? super T> predicate, int step) throws InterruptedException {
-        return listTransformingOperation(threads, values, step, Collectors.filtering(predicate, Collectors.toList()));
+        final List<? extends T> stepped = wrapToSteps(values, step);
+        final List<List<T>> blocks = evaluateBlocks(threads, stepped.size(), block -> {
+            final List<T> filtered = new ArrayList<>();
+            for (T value : stepped.subList(block.from(), block.to())) {
+                if (predicate.test(value)) {
+                    filtered.add(value);
+                }
+            }
+            return filtered;
+        });
+        return new ConcatenatedList<>(blocks);
     }
 
+    /**
+     * Maps values right into the resulting array, every block writes to its own range of it
+     */
     @Override
     public <T, U> List<U> map(int threads, List<? extends T> values, Function<? super T, ? extends U> mapper, int step) throws InterruptedException {
-        return listTransformingOperation(threads, values, step, Collectors.mapping(mapper, Collectors.toList()));
+        final List<? extends T> stepped = wrapToSteps(values, step);
+        final Object[] mapped = new Object[stepped.size()];
+        evaluateBlocks(threads, stepped.size(), block -> {
+            int index = block.from();
+            for (T value : stepped.subList(block.from(), block.to())) {
+                mapped[index++] = mapper.apply(value);
+            }
+            return null;
+        });
+        @SuppressWarnings("unchecked")
+        final List<U> result = (List<U>) Arrays.asList(mapped);
+        return result;
     }
 
     private <T, R> R genericMapReduce(int threads, List<? extends T> values, Function<T, R> mapper,
                                       Supplier<R> identitySupplier, BinaryOperator<R> operator, int step) throws InterruptedException {
         return parallelize(threads, wrapToSteps(values, step),
                 new Operation<>(
-                        identitySupplier,
                         (Stream<? extends T> stream) -> stream.map(mapper).reduce(identitySupplier.get(), operator),
                         s -> s.reduce(identitySupplier.get(), operator)
                 )
@@ -207,17 +261,19 @@ public class IterativeParallelism implements AdvancedIP {
 
     @Override
     public <T> boolean all(int threads, List<? extends T> values, Predicate<? super T> predicate, int step) throws InterruptedException {
-        return genericMapReduce(threads, values, predicate::test, () -> true, (a, b) -> a & b, step);
+        return !any(threads, values, predicate.negate(), step);
     }
 
     @Override
     public <T> boolean any(int threads, List<? extends T> values, Predicate<? super T> predicate, int step) throws InterruptedException {
-        return genericMapReduce(threads, values, predicate::test, () -> false, (a, b) -> a | b, step);
+        return anyValue(threads, wrapToSteps(values, step), predicate);
     }
 
     @Override
     public <T> int count(int threads, List<? extends T> values, Predicate<? super T> predicate, int steps) throws InterruptedException {
-        return genericMapReduce(threads, values, (a) -> predicate.test(a) ? 1 : 0, () -> 0, Integer::sum, steps);
+        return parallelize(threads, wrapToSteps(values, steps),
+                new Operation<T, Integer>(stream -> (int) stream.filter(predicate).count(), s -> s.mapToInt(Integer::intValue).sum())
+        );
     }
 
     @Override
@@ -234,5 +290,575 @@ public class IterativeParallelism implements AdvancedIP {
     public <T, R> R mapReduce(int threads, List<T> values, Function<T, R> lift, R identity, BinaryOperator<R> operator, int step) throws InterruptedException {
         return genericMapReduce(threads, values, lift, () -> identity, operator, step);
     }
-}
 
+    /**
+     * Computes inclusive prefix reductions of every {@code step}-th element of the list:
+     * {@code i}-th element of the result is reduction of stepped elements from first to {@code i}-th.
+     * Uses two passes over the same blocks: first one reduces every block,
+     * then every block is scanned again, starting from reduction of all the previous blocks.
+     *
+     * @param threads  number of concurrent threads
+     * @param values   values to scan
+     * @param identity neutral element of the operator
+     * @param operator associative reduction operator
+     * @param step     step size
+     * @param <T>      type of values
+     * @return list of prefix reductions
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public <T> List<T> scan(int threads, List<? extends T> values, T identity, BinaryOperator<T> operator, int step) throws InterruptedException {
+        final List<? extends T> stepped = wrapToSteps(values, step);
+        final List<T> totals = evaluateBlocks(threads, stepped.size(), block -> {
+            T total = identity;
+            for (T value : stepped.subList(block.from(), block.to())) {
+                total = operator.apply(total, value);
+            }
+            return total;
+        });
+
+        final List<T> offsets = new ArrayList<>(totals.size());
+        T offset = identity;
+        for (T total : totals) {
+            offsets.add(offset);
+            offset = operator.apply(offset, total);
+        }
+
+        final Object[] prefixes = new Object[stepped.size()];
+        evaluateBlocks(threads, stepped.size(), block -> {
+            T prefix = offsets.get(block.index());
+            int index = block.from();
+            for (T value : stepped.subList(block.from(), block.to())) {
+                prefix = operator.apply(prefix, value);
+                prefixes[index++] = prefix;
+            }
+            return null;
+        });
+        @SuppressWarnings("unchecked")
+        final List<T> result = (List<T>) Arrays.asList(prefixes);
+        return result;
+    }
+
+    /**
+     * Sorts every {@code step}-th element of the list, sort is stable.
+     * Every block is sorted separately, then sorted runs are merged pairwise,
+     * all merges of a round run in parallel.
+     *
+     * @param threads    number of concurrent threads
+     * @param values     values to sort
+     * @param comparator value comparator
+     * @param step       step size
+     * @param <T>        type of values
+     * @return sorted list
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public <T> List<T> sort(int threads, List<? extends T> values, Comparator<? super T> comparator, int step) throws InterruptedException {
+        final List<? extends T> stepped = wrapToSteps(values, step);
+        @SuppressWarnings("unchecked")
+        T[] source = (T[]) new Object[stepped.size()];
+        @SuppressWarnings("unchecked")
+        T[] target = (T[]) new Object[stepped.size()];
+
+        final T[] blocksSource = source;
+        final List<Integer> bounds = new ArrayList<>(List.of(0));
+        bounds.addAll(evaluateBlocks(threads, stepped.size(), block -> {
+            int index = block.from();
+            for (T value : stepped.subList(block.from(), block.to())) {
+                blocksSource[index++] = value;
+            }
+            Arrays.sort(blocksSource, block.from(), block.to(), comparator);
+            return block.to();
+        }));
+
+        while (bounds.size() > 2) {
+            final int runs = bounds.size() - 1;
+            final int pairs = (runs + 1) / 2;
+            final T[] roundSource = source;
+            final T[] roundTarget = target;
+            evaluateBlocks(pairs, pairs, block -> {
+                final int run = 2 * block.index();
+                merge(roundSource, bounds.get(run), bounds.get(Math.min(run + 1, runs)), bounds.get(Math.min(run + 2, runs)),
+                        roundTarget, comparator);
+                return null;
+            });
+
+            final List<Integer> merged = new ArrayList<>();
+            for (int i = 0; i < bounds.size(); i += 2) {
+                merged.add(bounds.get(i));
+            }
+            if (runs % 2 == 1) {
+                merged.add(bounds.getLast());
+            }
+            bounds.clear();
+            bounds.addAll(merged);
+
+            source = roundTarget;
+            target = roundSource;
+        }
+        return Arrays.asList(source);
+    }
+
+    /**
+     * Merges sorted ranges [from, middle) and [middle, to) of the source into the same range of the target,
+     * elements of the first range go first on ties
+     */
+    private static <T> void merge(T[] source, int from, int middle, int to, T[] target, Comparator<? super T> comparator) {
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right == to || left < middle && comparator.compare(source[left], source[right]) <= 0) {
+                target[i] = source[left++];
+            } else {
+                target[i] = source[right++];
+            }
+        }
+    }
+
+    /**
+     * Returns {@code k} greatest of every {@code step}-th element of the list, in descending order.
+     * Every block keeps its own heap of {@code k} greatest elements, heaps are merged at the end.
+     *
+     * @param threads    number of concurrent threads
+     * @param values     values to choose from
+     * @param k          number of elements to return, should be non-negative
+     * @param comparator value comparator
+     * @param step       step size
+     * @param <T>        type of values
+     * @return list of {@code k} greatest values or all the values, if there are less than {@code k} of them
+     * @throws InterruptedException     if executing thread was interrupted
+     * @throws IllegalArgumentException if {@code k} is negative
+     */
+    public <T> List<T> topK(int threads, List<? extends T> values, int k, Comparator<? super T> comparator, int step) throws InterruptedException {
+        if (k < 0) {
+            throw new IllegalArgumentException("k should be non-negative");
+        }
+        final List<? extends T> stepped = wrapToSteps(values, step);
+        final List<PriorityQueue<T>> heaps = evaluateBlocks(threads, stepped.size(), block -> {
+            final PriorityQueue<T> heap = new PriorityQueue<>(comparator);
+            stepped.subList(block.from(), block.to()).forEach(value -> offerBounded(heap, value, k, comparator));
+            return heap;
+        });
+
+        final PriorityQueue<T> result = new PriorityQueue<>(comparator);
+        heaps.forEach(heap -> heap.forEach(value -> offerBounded(result, value, k, comparator)));
+        final List<T> greatest = new ArrayList<>(result);
+        greatest.sort(comparator.reversed());
+        return greatest;
+    }
+
+    /**
+     * Adds value to the heap of at most {@code k} greatest values, heap head is the least of them
+     */
+    private static <T> void offerBounded(PriorityQueue<T> heap, T value, int k, Comparator<? super T> comparator) {
+        if (heap.size() < k) {
+            heap.add(value);
+        } else if (k > 0 && comparator.compare(value, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(value);
+        }
+    }
+
+    /**
+     * Creates lazy pipeline over every {@code step}-th element of the list.
+     * Stages are not evaluated until a terminal operation is called,
+     * then all of them are fused and applied in one parallel pass over the list.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to process
+     * @param step    step size
+     * @param <T>     type of values
+     * @return pipeline without stages
+     */
+    public <T> Pipeline<T> pipeline(int threads, List<? extends T> values, int step) {
+        final List<? extends T> stepped = wrapToSteps(values, step);
+        return new Pipeline<>(threads, stepped.size(), block -> stepped.subList(block.from(), block.to()).stream().map(Function.identity()));
+    }
+
+    /**
+     * Lazy chain of filter and map stages over a list, that is created by {@link #pipeline}.
+     * Every block of the list goes through all the stages in a single stream,
+     * so no intermediate lists are created.
+     *
+     * @param <T> type of values after all the stages
+     */
+    public final class Pipeline<T> {
+        private final int threads;
+        private final int size;
+        private final Function<Block, Stream<T>> blockStream;
+
+        private Pipeline(int threads, int size, Function<Block, Stream<T>> blockStream) {
+            this.threads = threads;
+            this.size = size;
+            this.blockStream = blockStream;
+        }
+
+        /**
+         * Adds filtering stage
+         *
+         * @param predicate filter predicate
+         * @return new pipeline, this one is not changed
+         */
+        public Pipeline<T> filter(Predicate<? super T> predicate) {
+            return new Pipeline<>(threads, size, block -> blockStream.apply(block).filter(predicate));
+        }
+
+        /**
+         * Adds mapping stage
+         *
+         * @param mapper mapping function
+         * @param <U>    type of mapped values
+         * @return new pipeline, this one is not changed
+         */
+        public <U> Pipeline<U> map(Function<? super T, ? extends U> mapper) {
+            return new Pipeline<U>(threads, size, block -> blockStream.apply(block).map(mapper));
+        }
+
+        /**
+         * Evaluates the pipeline and collects values to list, keeping their order
+         *
+         * @return list of values
+         * @throws InterruptedException if executing thread was interrupted
+         */
+        public List<T> toList() throws InterruptedException {
+            return new ConcatenatedList<>(evaluateBlocks(threads, size, block -> blockStream.apply(block).toList()));
+        }
+
+        /**
+         * Evaluates the pipeline and counts values
+         *
+         * @return number of values
+         * @throws InterruptedException if executing thread was interrupted
+         */
+        public int count() throws InterruptedException {
+            return evaluateBlocks(threads, size, block -> (int) blockStream.apply(block).count())
+                    .stream().mapToInt(Integer::intValue).sum();
+        }
+
+        /**
+         * Evaluates the pipeline and reduces values
+         *
+         * @param identity neutral element of the operator
+         * @param operator associative reduction operator
+         * @return reduced value
+         * @throws InterruptedException if executing thread was interrupted
+         */
+        public T reduce(T identity, BinaryOperator<T> operator) throws InterruptedException {
+            return evaluateBlocks(threads, size, block -> blockStream.apply(block).reduce(identity, operator))
+                    .stream().reduce(identity, operator);
+        }
+    }
+
+    /**
+     * Returns number of elements of an array with the given step
+     */
+    private static int steppedLength(int length, int step) {
+        return Math.ceilDiv(length, step);
+    }
+
+    /**
+     * Checks whether any of indices [0, size) satisfies the predicate.
+     * Blocks share the flag, so all of them stop as soon as any block finds a match.
+     */
+    private boolean anyIndex(int threads, int size, IntPredicate indexPredicate) throws InterruptedException {
+        final AtomicBoolean found = new AtomicBoolean();
+        evaluateBlocks(threads, size, block -> {
+            for (int i = block.from(); i < block.to() && !found.get(); i++) {
+                if (indexPredicate.test(i)) {
+                    found.set(true);
+                    return true;
+                }
+            }
+            return false;
+        }, Boolean::booleanValue);
+        return found.get();
+    }
+
+    /**
+     * Checks whether any of values satisfies the predicate, same way as {@link #anyIndex}
+     */
+    private <T> boolean anyValue(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        final AtomicBoolean found = new AtomicBoolean();
+        evaluateBlocks(threads, values.size(), block -> {
+            for (T value : values.subList(block.from(), block.to())) {
+                if (found.get()) {
+                    break;
+                }
+                if (predicate.test(value)) {
+                    found.set(true);
+                    return true;
+                }
+            }
+            return false;
+        }, Boolean::booleanValue);
+        return found.get();
+    }
+
+    /**
+     * Counts indices of [0, size) that satisfy the predicate
+     */
+    private int countIndices(int threads, int size, IntPredicate indexPredicate) throws InterruptedException {
+        return evaluateBlocks(threads, size, block -> {
+            int count = 0;
+            for (int i = block.from(); i < block.to(); i++) {
+                if (indexPredicate.test(i)) {
+                    count++;
+                }
+            }
+            return count;
+        }).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Reduces every {@code step}-th element of {@code int} array without boxing them.
+     *
+     * @param threads  number of concurrent threads
+     * @param values   values to reduce
+     * @param identity neutral element of the operator
+     * @param operator associative reduction operator
+     * @param step     step size
+     * @return reduced value
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public int reduce(int threads, int[] values, int identity, IntBinaryOperator operator, int step) throws InterruptedException {
+        return mapReduce(threads, values, IntUnaryOperator.identity(), identity, operator, step);
+    }
+
+    /**
+     * Maps and reduces every {@code step}-th element of {@code int} array without boxing them.
+     * Only the per-block results are boxed.
+     *
+     * @param threads  number of concurrent threads
+     * @param values   values to reduce
+     * @param lift     mapping function
+     * @param identity neutral element of the operator
+     * @param operator associative reduction operator
+     * @param step     step size
+     * @return reduced value
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public int mapReduce(int threads, int[] values, IntUnaryOperator lift, int identity, IntBinaryOperator operator, int step) throws InterruptedException {
+        final List<Integer> results = evaluateBlocks(threads, steppedLength(values.length, step), block -> {
+            int result = identity;
+            for (int i = block.from(); i < block.to(); i++) {
+                result = operator.applyAsInt(result, lift.applyAsInt(values[i * step]));
+            }
+            return result;
+        });
+        int result = identity;
+        for (int blockResult : results) {
+            result = operator.applyAsInt(result, blockResult);
+        }
+        return result;
+    }
+
+    /**
+     * Counts every {@code step}-th element of {@code int} array that satisfies the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @param step      step size
+     * @return number of values satisfying the predicate
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public int count(int threads, int[] values, IntPredicate predicate, int step) throws InterruptedException {
+        return countIndices(threads, steppedLength(values.length, step), i -> predicate.test(values[i * step]));
+    }
+
+    /**
+     * Checks whether all of every {@code step}-th elements of {@code int} array satisfy the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @param step      step size
+     * @return whether all values satisfy the predicate or {@code true}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean all(int threads, int[] values, IntPredicate predicate, int step) throws InterruptedException {
+        return !any(threads, values, predicate.negate(), step);
+    }
+
+    /**
+     * Checks whether any of every {@code step}-th elements of {@code int} array satisfies the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @param step      step size
+     * @return whether any value satisfies the predicate or {@code false}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean any(int threads, int[] values, IntPredicate predicate, int step) throws InterruptedException {
+        return anyIndex(threads, steppedLength(values.length, step), i -> predicate.test(values[i * step]));
+    }
+
+    /**
+     * Reduces every {@code step}-th element of {@code long} array without boxing them.
+     *
+     * @param threads  number of concurrent threads
+     * @param values   values to reduce
+     * @param identity neutral element of the operator
+     * @param operator associative reduction operator
+     * @param step     step size
+     * @return reduced value
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public long reduce(int threads, long[] values, long identity, LongBinaryOperator operator, int step) throws InterruptedException {
+        return mapReduce(threads, values, LongUnaryOperator.identity(), identity, operator, step);
+    }
+
+    /**
+     * Maps and reduces every {@code step}-th element of {@code long} array without boxing them.
+     * Only the per-block results are boxed.
+     *
+     * @param threads  number of concurrent threads
+     * @param values   values to reduce
+     * @param lift     mapping function
+     * @param identity neutral element of the operator
+     * @param operator associative reduction operator
+     * @param step     step size
+     * @return reduced value
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public long mapReduce(int threads, long[] values, LongUnaryOperator lift, long identity, LongBinaryOperator operator, int step) throws InterruptedException {
+        final List<Long> results = evaluateBlocks(threads, steppedLength(values.length, step), block -> {
+            long result = identity;
+            for (int i = block.from(); i < block.to(); i++) {
+                result = operator.applyAsLong(result, lift.applyAsLong(values[i * step]));
+            }
+            return result;
+        });
+        long result = identity;
+        for (long blockResult : results) {
+            result = operator.applyAsLong(result, blockResult);
+        }
+        return result;
+    }
+
+    /**
+     * Counts every {@code step}-th element of {@code long} array that satisfies the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @param step      step size
+     * @return number of values satisfying the predicate
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public int count(int threads, long[] values, LongPredicate predicate, int step) throws InterruptedException {
+        return countIndices(threads, steppedLength(values.length, step), i -> predicate.test(values[i * step]));
+    }
+
+    /**
+     * Checks whether all of every {@code step}-th elements of {@code long} array satisfy the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @param step      step size
+     * @return whether all values satisfy the predicate or {@code true}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean all(int threads, long[] values, LongPredicate predicate, int step) throws InterruptedException {
+        return !any(threads, values, predicate.negate(), step);
+    }
+
+    /**
+     * Checks whether any of every {@code step}-th elements of {@code long} array satisfies the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @param step      step size
+     * @return whether any value satisfies the predicate or {@code false}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean any(int threads, long[] values, LongPredicate predicate, int step) throws InterruptedException {
+        return anyIndex(threads, steppedLength(values.length, step), i -> predicate.test(values[i * step]));
+    }
+
+    /**
+     * Reduces every {@code step}-th element of {@code double} array without boxing them.
+     *
+     * @param threads  number of concurrent threads
+     * @param values   values to reduce
+     * @param identity neutral element of the operator
+     * @param operator associative reduction operator
+     * @param step     step size
+     * @return reduced value
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public double reduce(int threads, double[] values, double identity, DoubleBinaryOperator operator, int step) throws InterruptedException {
+        return mapReduce(threads, values, DoubleUnaryOperator.identity(), identity, operator, step);
+    }
+
+    /**
+     * Maps and reduces every {@code step}-th element of {@code double} array without boxing them.
+     * Only the per-block results are boxed.
+     *
+     * @param threads  number of concurrent threads
+     * @param values   values to reduce
+     * @param lift     mapping function
+     * @param identity neutral element of the operator
+     * @param operator associative reduction operator
+     * @param step     step size
+     * @return reduced value
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public double mapReduce(int threads, double[] values, DoubleUnaryOperator lift, double identity, DoubleBinaryOperator operator, int step) throws InterruptedException {
+        final List<Double> results = evaluateBlocks(threads, steppedLength(values.length, step), block -> {
+            double result = identity;
+            for (int i = block.from(); i < block.to(); i++) {
+                result = operator.applyAsDouble(result, lift.applyAsDouble(values[i * step]));
+            }
+            return result;
+        });
+        double result = identity;
+        for (double blockResult : results) {
+            result = operator.applyAsDouble(result, blockResult);
+        }
+        return result;
+    }
+
+    /**
+     * Counts every {@code step}-th element of {@code double} array that satisfies the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @param step      step size
+     * @return number of values satisfying the predicate
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public int count(int threads, double[] values, DoublePredicate predicate, int step) throws InterruptedException {
+        return countIndices(threads, steppedLength(values.length, step), i -> predicate.test(values[i * step]));
+    }
+
+    /**
+     * Checks whether all of every {@code step}-th elements of {@code double} array satisfy the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @param step      step size
+     * @return whether all values satisfy the predicate or {@code true}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean all(int threads, double[] values, DoublePredicate predicate, int step) throws InterruptedException {
+        return !any(threads, values, predicate.negate(), step);
+    }
+
+    /**
+     * Checks whether any of every {@code step}-th elements of {@code double} array satisfies the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @param step      step size
+     * @return whether any value satisfies the predicate or {@code false}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean any(int threads, double[] values, DoublePredicate predicate, int step) throws InterruptedException {
+        return anyIndex(threads, steppedLength(values.length, step), i -> predicate.test(values[i * step]));
+    }
+}
@@ -0,0 +1,258 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BinaryOperator;
+import java.util.stream.IntStream;
+
+public class IterativeParallelismTests {
+    private static final List<Integer> SIZES = List.of(0, 1, 2, 10, 1_000, 10_007);
+    private static final List<Integer> THREADS = List.of(1, 2, 5, 16);
+    private static final List<Integer> STEPS = List.of(1, 2, 7);
+    private static final Random random = new Random(8045323745920334157L);
+    
+    @FunctionalInterface
+    private interface Check {
+        void run(IterativeParallelism parallelism, int threads, int step) throws InterruptedException;
+    }
+    
+    /**
+     * Runs check for every number of threads and step, with and without mapper
+     */
+    private static void check(final Check check) throws InterruptedException {
+        try (var mapper = new ParallelMapperImpl(4)) {
+            for (final IterativeParallelism parallelism : List.of(new IterativeParallelism(), new IterativeParallelism(mapper))) {
+                for (final int threads : THREADS) {
+                    for (final int step : STEPS) {
+                        check.run(parallelism, threads, step);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns random values of every size, as random access and as linked lists
+     */
+    private static List<List<Integer>> lists() {
+        final List<List<Integer>> lists = new ArrayList<>();
+        for (final int size : SIZES) {
+            final List<Integer> values = random.ints(size, -1000, 1000).boxed().toList();
+            lists.add(new ArrayList<>(values));
+            lists.add(new LinkedList<>(values));
+        }
+        return lists;
+    }
+    
+    private static <T> List<T> stepped(final List<T> values, final int step) {
+        final List<T> stepped = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += step) {
+            stepped.add(values.get(i));
+        }
+        return stepped;
+    }
+    
+    private static int[] stepped(final int[] values, final int step) {
+        return IntStream.range(0, Math.ceilDiv(values.length, step)).map(i -> values[i * step]).toArray();
+    }
+    
+    @Test
+    public void intOperations() throws InterruptedException {
+        for (final int size : SIZES) {
+            final int[] values = random.ints(size, -1000, 1000).toArray();
+            check((parallelism, threads, step) -> {
+                final int[] stepped = stepped(values, step);
+                Assertions.assertEquals(Arrays.stream(stepped).sum(),
+                        parallelism.reduce(threads, values, 0, Integer::sum, step));
+                Assertions.assertEquals(Arrays.stream(stepped).map(x -> x * x).max().orElse(Integer.MIN_VALUE),
+                        parallelism.mapReduce(threads, values, x -> x * x, Integer.MIN_VALUE, Math::max, step));
+                Assertions.assertEquals(Arrays.stream(stepped).filter(x -> x > 0).count(),
+                        parallelism.count(threads, values, x -> x > 0, step));
+                Assertions.assertEquals(Arrays.stream(stepped).allMatch(x -> x > -990),
+                        parallelism.all(threads, values, x -> x > -990, step));
+                Assertions.assertEquals(Arrays.stream(stepped).anyMatch(x -> x == 7),
+                        parallelism.any(threads, values, x -> x == 7, step));
+            });
+        }
+    }
+    
+    @Test
+    public void longOperations() throws InterruptedException {
+        for (final int size : SIZES) {
+            final int[] ints = random.ints(size, -1000, 1000).toArray();
+            final long[] values = Arrays.stream(ints).asLongStream().map(x -> x * 1_000_000_000L).toArray();
+            check((parallelism, threads, step) -> {
+                final long[] stepped = Arrays.stream(stepped(ints, step)).asLongStream().map(x -> x * 1_000_000_000L).toArray();
+                Assertions.assertEquals(Arrays.stream(stepped).sum(),
+                        parallelism.reduce(threads, values, 0, Long::sum, step));
+                Assertions.assertEquals(Arrays.stream(stepped).map(Math::abs).min().orElse(Long.MAX_VALUE),
+                        parallelism.mapReduce(threads, values, Math::abs, Long.MAX_VALUE, Math::min, step));
+                Assertions.assertEquals(Arrays.stream(stepped).filter(x -> x < 0).count(),
+                        parallelism.count(threads, values, x -> x < 0, step));
+                Assertions.assertEquals(Arrays.stream(stepped).allMatch(x -> x != 0),
+                        parallelism.all(threads, values, x -> x != 0, step));
+                Assertions.assertEquals(Arrays.stream(stepped).anyMatch(x -> x > 998_000_000_000L),
+                        parallelism.any(threads, values, x -> x > 998_000_000_000L, step));
+            });
+        }
+    }
+    
+    @Test
+    public void doubleOperations() throws InterruptedException {
+        for (final int size : SIZES) {
+            final int[] ints = random.ints(size, -1000, 1000).toArray();
+            // halves are summed exactly in any order
+            final double[] values = Arrays.stream(ints).asDoubleStream().map(x -> x / 2).toArray();
+            check((parallelism, threads, step) -> {
+                final double[] stepped = Arrays.stream(stepped(ints, step)).asDoubleStream().map(x -> x / 2).toArray();
+                Assertions.assertEquals(Arrays.stream(stepped).sum(),
+                        parallelism.reduce(threads, values, 0, Double::sum, step));
+                Assertions.assertEquals(Arrays.stream(stepped).map(x -> -x).max().orElse(Double.NEGATIVE_INFINITY),
+                        parallelism.mapReduce(threads, values, x -> -x, Double.NEGATIVE_INFINITY, Math::max, step));
+                Assertions.assertEquals(Arrays.stream(stepped).filter(x -> x > 100).count(),
+                        parallelism.count(threads, values, x -> x > 100, step));
+                Assertions.assertEquals(Arrays.stream(stepped).allMatch(x -> x < 499),
+                        parallelism.all(threads, values, x -> x < 499, step));
+                Assertions.assertEquals(Arrays.stream(stepped).anyMatch(x -> x == 0.5),
+                        parallelism.any(threads, values, x -> x == 0.5, step));
+            });
+        }
+    }
+    
+    @Test
+    public void pipeline() throws InterruptedException {
+        for (final List<Integer> values : lists()) {
+            check((parallelism, threads, step) -> {
+                final List<Integer> stepped = stepped(values, step);
+                final IterativeParallelism.Pipeline<String> pipeline = parallelism.pipeline(threads, values, step)
+                        .filter(x -> x % 3 != 0)
+                        .map(x -> x * 2)
+                        .filter(x -> x > -500)
+                        .map(Integer::toHexString);
+                final List<String> expected = stepped.stream()
+                        .filter(x -> x % 3 != 0)
+                        .map(x -> x * 2)
+                        .filter(x -> x > -500)
+                        .map(Integer::toHexString)
+                        .toList();
+                
+                Assertions.assertEquals(expected, pipeline.toList());
+                Assertions.assertEquals(expected.size(), pipeline.count());
+                Assertions.assertEquals(String.join("", expected), pipeline.reduce("", String::concat));
+                Assertions.assertEquals(stepped, parallelism.pipeline(threads, values, step).toList());
+            });
+        }
+    }
+    
+    @Test
+    public void pipelineStagesAreIndependent() throws InterruptedException {
+        final List<Integer> values = IntStream.range(0, 100).boxed().toList();
+        final IterativeParallelism parallelism = new IterativeParallelism();
+        final IterativeParallelism.Pipeline<Integer> base = parallelism.pipeline(3, values, 1).filter(x -> x % 2 == 0);
+        final IterativeParallelism.Pipeline<Integer> squares = base.map(x -> x * x);
+        
+        Assertions.assertEquals(50, base.count());
+        Assertions.assertEquals(values.stream().filter(x -> x % 2 == 0).map(x -> x * x).toList(), squares.toList());
+        Assertions.assertEquals(values.stream().filter(x -> x % 2 == 0).toList(), base.toList());
+    }
+    
+    private static <T> List<T> sequentialScan(final List<T> values, final T identity, final BinaryOperator<T> operator) {
+        final List<T> result = new ArrayList<>();
+        T total = identity;
+        for (final T value : values) {
+            total = operator.apply(total, value);
+            result.add(total);
+        }
+        return result;
+    }
+    
+    @Test
+    public void scan() throws InterruptedException {
+        for (final List<Integer> values : lists()) {
+            check((parallelism, threads, step) -> {
+                final List<Integer> stepped = stepped(values, step);
+                Assertions.assertEquals(sequentialScan(stepped, 0, Integer::sum),
+                        parallelism.scan(threads, values, 0, Integer::sum, step));
+                Assertions.assertEquals(sequentialScan(stepped, Integer.MIN_VALUE, Math::max),
+                        parallelism.scan(threads, values, Integer.MIN_VALUE, Math::max, step));
+            });
+        }
+    }
+    
+    @Test
+    public void scanNonCommutative() throws InterruptedException {
+        final List<String> values = IntStream.range(0, 500).mapToObj(i -> Character.toString('a' + i % 26)).toList();
+        for (final List<String> list : List.of(values, new LinkedList<>(values))) {
+            check((parallelism, threads, step) -> Assertions.assertEquals(
+                    sequentialScan(stepped(list, step), "", String::concat),
+                    parallelism.scan(threads, list, "", String::concat, step)));
+        }
+    }
+    
+    private record Keyed(int key, int index) {
+    }
+    
+    @Test
+    public void sort() throws InterruptedException {
+        for (final List<Integer> values : lists()) {
+            check((parallelism, threads, step) -> {
+                final List<Integer> expected = new ArrayList<>(stepped(values, step));
+                expected.sort(Comparator.naturalOrder());
+                Assertions.assertEquals(expected, parallelism.sort(threads, values, Comparator.naturalOrder(), step));
+            });
+        }
+    }
+    
+    @Test
+    public void sortIsStable() throws InterruptedException {
+        final List<Keyed> values = IntStream.range(0, 5_000).mapToObj(i -> new Keyed(random.nextInt(20), i)).toList();
+        final Comparator<Keyed> byKey = Comparator.comparingInt(Keyed::key);
+        for (final List<Keyed> list : List.of(values, new LinkedList<>(values))) {
+            check((parallelism, threads, step) -> {
+                final List<Keyed> expected = new ArrayList<>(stepped(list, step));
+                expected.sort(byKey);
+                Assertions.assertEquals(expected, parallelism.sort(threads, list, byKey, step));
+            });
+        }
+    }
+    
+    @Test
+    public void topK() throws InterruptedException {
+        for (final List<Integer> values : lists()) {
+            check((parallelism, threads, step) -> {
+                final List<Integer> stepped = stepped(values, step);
+                for (final int k : List.of(0, 1, 5, 100, stepped.size(), stepped.size() + 1)) {
+                    final List<Integer> expected = stepped.stream().sorted(Comparator.reverseOrder()).limit(k).toList();
+                    Assertions.assertEquals(expected, parallelism.topK(threads, values, k, Comparator.naturalOrder(), step));
+                }
+            });
+        }
+    }
+    
+    @Test
+    public void topKWithComparator() throws InterruptedException {
+        final List<Keyed> values = IntStream.range(0, 1_000).mapToObj(i -> new Keyed(i % 37, i)).toList();
+        final Comparator<Keyed> byKey = Comparator.comparingInt(Keyed::key);
+        check((parallelism, threads, step) -> {
+            final List<Integer> expected = stepped(values, step).stream()
+                    .map(Keyed::key)
+                    .sorted(Comparator.reverseOrder())
+                    .limit(10)
+                    .toList();
+            Assertions.assertEquals(expected, parallelism.topK(threads, values, 10, byKey, step).stream().map(Keyed::key).toList());
+        });
+    }
+    
+    @Test
+    public void topKNegative() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new IterativeParallelism().topK(2, List.of(1, 2, 3), -1, Comparator.<Integer>naturalOrder(), 1));
+    }
+}
@@ -0,0 +1,68 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of durations with power-of-two buckets.
+ * Bucket {@code i} counts durations in range [2<sup>i</sup>, 2<sup>i + 1</sup>) nanoseconds,
+ * so percentiles are precise up to a factor of two, which is enough to see the order of latencies.
+ */
+final class LatencyHistogram {
+    private static final int BUCKETS = Long.SIZE;
+    
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    
+    /**
+     * Records single duration
+     *
+     * @param nanos duration in nanoseconds, non-positive durations are counted as one nanosecond
+     */
+    void record(long nanos) {
+        buckets.incrementAndGet(bucket(nanos));
+    }
+    
+    /**
+     * Returns total number of recorded durations
+     *
+     * @return number of recorded durations
+     */
+    long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += buckets.get(i);
+        }
+        return total;
+    }
+    
+    /**
+     * Estimates percentile of recorded durations as the upper bound of the bucket it falls into
+     *
+     * @param quantile quantile in range (0, 1], for example {@code 0.99}
+     * @return estimated duration in nanoseconds, or 0 if nothing was recorded
+     */
+    long percentile(double quantile) {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        
+        final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+    
+    private static int bucket(long nanos) {
+        return BUCKETS - 1 - Long.numberOfLeadingZeros(Math.max(1, nanos));
+    }
+}
@@ -0,0 +1,133 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects metrics of a {@link TaskScheduler} and queries that are executed by it.
+ * Counters are updated by schedulers and {@link ParallelMapperImpl}, reading is not synchronized
+ * with updates, so values of different getters may be slightly inconsistent with each other.
+ */
+final class MapperMetrics implements ParallelMapperMXBean {
+    private final TaskScheduler scheduler;
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder producerBlocked = new LongAdder();
+    private final LatencyHistogram taskLatency = new LatencyHistogram();
+    private final LatencyHistogram queryTime = new LatencyHistogram();
+    
+    /**
+     * Busy and idle time of a single worker
+     *
+     * @param busyNanos time spent executing tasks
+     * @param idleNanos time spent looking for tasks and waiting for them
+     */
+    record WorkerTimes(long busyNanos, long idleNanos) {
+    }
+    
+    /**
+     * Creates metrics of given scheduler, scheduler is asked for its workers on every read
+     *
+     * @param scheduler scheduler that owns metrics
+     */
+    MapperMetrics(TaskScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+    
+    /**
+     * Wraps task, so that its queueing, start and finish are counted
+     *
+     * @param task task that is being enqueued
+     * @return task to be put to the queue instead
+     */
+    Runnable track(Runnable task) {
+        enqueued.increment();
+        final long enqueuedAt = System.nanoTime();
+        return () -> {
+            started.increment();
+            try {
+                task.run();
+            } finally {
+                completed.increment();
+                taskLatency.record(System.nanoTime() - enqueuedAt);
+            }
+        };
+    }
+    
+    void producerBlocked(long nanos) {
+        producerBlocked.add(nanos);
+    }
+    
+    void queryCompleted(long nanos) {
+        queryTime.record(nanos);
+    }
+    
+    @Override
+    public int getWorkerCount() {
+        return scheduler.workerTimes().size();
+    }
+    
+    @Override
+    public long getQueueDepth() {
+        // reading started first, so the difference is never negative
+        final long startedTasks = started.sum();
+        return Math.max(0, enqueued.sum() - startedTasks);
+    }
+    
+    @Override
+    public long getSubmittedTasks() {
+        return enqueued.sum();
+    }
+    
+    @Override
+    public long getCompletedTasks() {
+        return completed.sum();
+    }
+    
+    @Override
+    public long getProducerBlockedNanos() {
+        return producerBlocked.sum();
+    }
+    
+    @Override
+    public long[] getWorkerBusyNanos() {
+        return scheduler.workerTimes().stream().mapToLong(WorkerTimes::busyNanos).toArray();
+    }
+    
+    @Override
+    public long[] getWorkerIdleNanos() {
+        return scheduler.workerTimes().stream().mapToLong(WorkerTimes::idleNanos).toArray();
+    }
+    
+    @Override
+    public long getTaskLatencyP50Nanos() {
+        return taskLatency.percentile(0.5);
+    }
+    
+    @Override
+    public long getTaskLatencyP90Nanos() {
+        return taskLatency.percentile(0.9);
+    }
+    
+    @Override
+    public long getTaskLatencyP99Nanos() {
+        return taskLatency.percentile(0.99);
+    }
+    
+    @Override
+    public long getCompletedQueries() {
+        return queryTime.count();
+    }
+    
+    @Override
+    public long getQueryTimeP50Nanos() {
+        return queryTime.percentile(0.5);
+    }
+    
+    @Override
+    public long getQueryTimeP99Nanos() {
+        return queryTime.percentile(0.99);
+    }
+
+}
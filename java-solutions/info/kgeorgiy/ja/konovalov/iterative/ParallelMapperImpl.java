@@ -3,71 +3,368 @@ package info.kgeorgiy.ja.konovalov.iterative;
 
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
-import java.util.ArrayDeque;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.function.UnaryOperator;
+import java.util.function.Predicate;
 
 public class ParallelMapperImpl implements ParallelMapper {
     private volatile boolean closed = false;
-    private final static int DEFAULT_TIMEOUT_IN_MILLISECONDS = 1000;
-    private final List<Thread> runningThreads;
+    private final static int CHUNKS_PER_THREAD = 4;
+    private final static int MAXIMUM_CHUNK_SIZE = 1024;
+    /**
+     * Time after which running chunk gives its worker back, if other queries are waiting
+     */
+    private final static long TIME_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /**
+     * Time slice is checked only after every 64th element of a range, so cheap elements do not pay for a clock read
+     */
+    private final static int TIME_CHECK_MASK = 63;
+    /**
+     * Weight of queries that do not specify it
+     */
+    public final static int DEFAULT_WEIGHT = 1;
     
-    private final SimplifiedSynchronizedQueue<Runnable> queue;
+    private final TaskScheduler scheduler;
+    private final boolean chunked;
+    private final Set<Query> activeQueries = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextAffinity = new AtomicInteger();
+    private ObjectName mBeanName = null;
     
     
     /**
      * Creates a new instance of the ParallelMapperImpl class with the specified number of threads.
      * Number of threads should be greater than zero.
-     * Each thread dequeues a task from the shared queue and executes it until the thread is interrupted.
+     * Each thread owns a deque of tasks, executes tasks from it and steals tasks from other threads when it is empty.
      *
      * @param threads the number of threads to be created
      * @throws IllegalArgumentException if the number of threads is non-positive
+     * @see WorkStealingScheduler
      */
     public ParallelMapperImpl(int threads) {
-        this.queue = new SimplifiedSynchronizedQueue<>();
-        if (threads <= 0) {
-            throw new IllegalArgumentException("Number of threads should be positive");
+        this(new WorkStealingScheduler(checkPositive(threads, "Number of threads")), true);
+    }
+    
+    /**
+     * Creates elastic ParallelMapperImpl: it keeps {@code minThreads} threads all the time,
+     * starts new threads while tasks are enqueued and nobody is idle, up to {@code maxThreads},
+     * and stops threads that stay idle for {@code keepAlive}.
+     *
+     * @param minThreads number of threads that are never stopped
+     * @param maxThreads maximum number of threads
+     * @param keepAlive  time that extra thread stays idle before it is stopped
+     * @throws IllegalArgumentException if {@code minThreads} is negative, {@code maxThreads} is less than
+     *                                  {@code minThreads} or non-positive, or {@code keepAlive} is non-positive
+     * @see WorkStealingScheduler
+     */
+    public ParallelMapperImpl(int minThreads, int maxThreads, Duration keepAlive) {
+        this(new WorkStealingScheduler(
+                checkElasticBounds(minThreads, maxThreads),
+                maxThreads,
+                checkPositive(keepAlive, "Keep-alive time").toNanos(),
+                1
+        ), true);
+    }
+    
+    private ParallelMapperImpl(TaskScheduler scheduler, boolean chunked) {
+        this.scheduler = scheduler;
+        this.chunked = chunked;
+    }
+    
+    /**
+     * Creates ParallelMapperImpl that runs every element on its own virtual thread.
+     * Designed for blocking mapping functions (remote calls, file reads): waiting elements
+     * do not hold platform threads, so up to {@code maxConcurrency} elements are waited for simultaneously.
+     * Elements are never grouped into chunks, so every element waits only for its own call.
+     *
+     * @param maxConcurrency maximum number of elements that are mapped simultaneously
+     * @return created mapper
+     * @throws IllegalArgumentException if the maximum concurrency is non-positive
+     * @see VirtualThreadScheduler
+     */
+    public static ParallelMapperImpl withVirtualThreads(int maxConcurrency) {
+        return new ParallelMapperImpl(
+                new VirtualThreadScheduler(checkPositive(maxConcurrency, "Maximum concurrency")),
+                false
+        );
+    }
+    
+    /**
+     * Creates ParallelMapperImpl with threads split into groups, for example one group per CPU socket.
+     * Every call is assigned to a group in turn and its tasks are queued only to threads of that group.
+     * Thread steals tasks from threads of its own group first and from other groups only
+     * when its group is out of work, so chunks of a list tend to stay on the same group
+     * and data is not moved between sockets more than necessary, while a single huge call still uses all threads.
+     * Groups are logical, Java can not bind threads to CPUs,
+     * run JVM with {@code numactl} or {@code -XX:+UseNUMA} to control memory placement.
+     *
+     * @param threads the number of threads to be created
+     * @param groups  the number of groups, threads are assigned to groups in turn
+     * @return created mapper
+     * @throws IllegalArgumentException if the number of threads is non-positive,
+     *                                  or the number of groups is not between 1 and the number of threads
+     * @see WorkStealingScheduler
+     */
+    public static ParallelMapperImpl withWorkerGroups(int threads, int groups) {
+        return new ParallelMapperImpl(new WorkStealingScheduler(
+                checkPositive(threads, "Number of threads"),
+                threads,
+                0,
+                checkGroups(groups, threads)
+        ), true);
+    }
+    
+    private static int checkPositive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " should be positive");
         }
-        
-        runningThreads = new ArrayList<>();
-        for (int i = 0; i < threads; i++) {
-            runningThreads.add(new Thread(() -> {
-                try {
-                    while (!Thread.currentThread().isInterrupted() && !closed) {
-                        var task = queue.poll();
-                        if (task != null) {
-                            task.run();
-                        }
-                    }
-                } catch (InterruptedException ignored) {
-                    // just ignore while main thread is not interrupted
-                }
-            }));
-            runningThreads.get(i).start();
+        return value;
+    }
+    
+    private static Duration checkPositive(Duration value, String name) {
+        if (value.isNegative() || value.isZero()) {
+            throw new IllegalArgumentException(name + " should be positive");
         }
+        return value;
     }
     
+    private static int checkGroups(int groups, int threads) {
+        if (groups <= 0 || groups > threads) {
+            throw new IllegalArgumentException("Number of groups should be between 1 and number of threads");
+        }
+        return groups;
+    }
+    
+    private static int checkElasticBounds(int minThreads, int maxThreads) {
+        checkPositive(maxThreads, "Maximum number of threads");
+        if (minThreads < 0 || minThreads > maxThreads) {
+            throw new IllegalArgumentException("Minimum number of threads should be between 0 and maximum number of threads");
+        }
+        return minThreads;
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Concurrent calls share workers fairly, see {@link #map(Function, List, Predicate, int)}.
+     */
     @Override
     public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
+        return map(f, args, null, DEFAULT_WEIGHT);
+    }
+    
+    /**
+     * Same as {@link #map(Function, List, Predicate, int)} with {@link #DEFAULT_WEIGHT}.
+     *
+     * @param f             mapping function
+     * @param args          elements to map
+     * @param stopCondition condition on mapped value that stops mapping, {@code null} means never stop
+     * @param <T>           type of elements to map
+     * @param <R>           type of mapped values
+     * @return list of mapped values, in the order of {@code args}
+     * @throws InterruptedException  if the current thread is interrupted while waiting
+     * @throws IllegalStateException if mapper is closed
+     * @throws RuntimeException      if any exceptions were thrown during the mapping operation
+     */
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args,
+                              Predicate<? super R> stopCondition) throws InterruptedException {
+        return map(f, args, stopCondition, DEFAULT_WEIGHT);
+    }
+    
+    /**
+     * Version of {@link #map}, that stops as soon as some mapped value satisfies {@code stopCondition}.
+     * Chunks that are not started yet are dropped, running chunks stop after their current element.
+     * Elements that were not mapped have {@code null} values in the returned list.
+     * Like in {@link #map}, first failed element stops mapping the same way and exception is thrown.
+     * If the current thread is interrupted, mapping is stopped too.
+     * <p>
+     * Concurrent calls are scheduled fairly: every call keeps at most {@code weight} tasks per worker
+     * in the queues, and a task puts itself back to the tail of the queue after every chunk.
+     * Chunk that runs longer than a millisecond, while other calls are active, is put back too,
+     * with its remaining elements. So calls get workers in round-robin manner, proportionally to their weights,
+     * and small calls wait for about a millisecond per worker, whatever the cost of elements of a huge one.
+     *
+     * @param f             mapping function
+     * @param args          elements to map
+     * @param stopCondition condition on mapped value that stops mapping, {@code null} means never stop
+     * @param weight        share of workers that the call gets, when it competes with other calls
+     * @param <T>           type of elements to map
+     * @param <R>           type of mapped values
+     * @return list of mapped values, in the order of {@code args}
+     * @throws InterruptedException     if the current thread is interrupted while waiting
+     * @throws IllegalArgumentException if weight is non-positive
+     * @throws IllegalStateException    if mapper is closed
+     * @throws RuntimeException         if any exceptions were thrown during the mapping operation
+     */
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args,
+                              Predicate<? super R> stopCondition, int weight) throws InterruptedException {
         ensureOpen();
         
-        MapQueryHelper<R> currentHelper = new MapQueryHelper<>(args.size());
-        for (int i = 0; i < args.size(); i++) {
-            int finalI = i;
-            queue.push(() -> {
-                try {
-                    R result = f.apply(args.get(finalI));
-                    currentHelper.set(finalI, result);
-                } catch (RuntimeException e) {
-                    currentHelper.addSuppressed(e);
-                }
-            });
+        MapQueryHelper<T, R> currentHelper = new MapQueryHelper<>(f, args, stopCondition, checkPositive(weight, "Weight"));
+        register(currentHelper);
+        try {
+            currentHelper.submitChunks();
+            return currentHelper.evaluate();
+        } catch (InterruptedException e) {
+            currentHelper.abort(e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Asynchronous version of {@link #map}, that returns immediately.
+     * Same as {@link #mapAsync(Function, List, int)} with {@link #DEFAULT_WEIGHT}.
+     *
+     * @param f    mapping function
+     * @param args elements to map
+     * @param <T>  type of elements to map
+     * @param <R>  type of mapped values
+     * @return future of mapped values, in the order of {@code args}
+     * @throws IllegalStateException if mapper is closed
+     */
+    public <T, R> CompletableFuture<List<R>> mapAsync(Function<? super T, ? extends R> f, List<? extends T> args) {
+        return mapAsync(f, args, DEFAULT_WEIGHT);
+    }
+    
+    /**
+     * Asynchronous version of {@link #map}, that returns immediately.
+     * Tasks are submitted by a separate virtual thread, so caller is never blocked, even when queues are full.
+     * Returned future completes with the list of mapped values or with the exception,
+     * as {@link #map} would throw.
+     * If mapper is closed before mapping is finished, future completes with {@link IllegalStateException}.
+     * <p>
+     * Returned future works as a cancellation token: if it is cancelled or completed by the caller,
+     * chunks that are not started yet are dropped and running chunks stop after their current element.
+     *
+     * @param f      mapping function
+     * @param args   elements to map
+     * @param weight share of workers that the call gets, when it competes with other calls
+     * @param <T>    type of elements to map
+     * @param <R>    type of mapped values
+     * @return future of mapped values, in the order of {@code args}
+     * @throws IllegalArgumentException if weight is non-positive
+     * @throws IllegalStateException    if mapper is closed
+     */
+    public <T, R> CompletableFuture<List<R>> mapAsync(Function<? super T, ? extends R> f, List<? extends T> args,
+                                                      int weight) {
+        ensureOpen();
+        
+        MapQueryHelper<T, R> currentHelper = new MapQueryHelper<>(f, args, null, checkPositive(weight, "Weight"));
+        register(currentHelper);
+        Thread.startVirtualThread(() -> {
+            try {
+                currentHelper.submitChunks();
+            } catch (InterruptedException e) {
+                currentHelper.abort(e);
+            }
+        });
+        final CompletableFuture<List<R>> token = currentHelper.result.copy();
+        token.whenComplete((ignoredResult, e) -> currentHelper.abort(new CancellationException("Cancelled by caller")));
+        return token;
+    }
+    
+    /**
+     * Streaming version of {@link #map}, that passes mapped values to {@code downstream} in the order of {@code args}.
+     * Value is passed as soon as all values before it are passed, while next elements are still being mapped.
+     * At most {@code window} elements are mapped or wait to be passed at once, so memory used by the mapper
+     * does not depend on the number of elements, and {@code args} are read lazily.
+     * <p>
+     * {@code downstream} is called only from the current thread.
+     * If any element fails, no more values are passed and no more elements are submitted,
+     * exception aggregated from already submitted elements is thrown after they are finished.
+     *
+     * @param f          mapping function
+     * @param args       elements to map
+     * @param window     maximum number of elements that are mapped or wait to be passed at once
+     * @param downstream consumer of mapped values
+     * @param <T>        type of elements to map
+     * @param <R>        type of mapped values
+     * @throws InterruptedException     if the current thread is interrupted while waiting
+     * @throws IllegalArgumentException if window is non-positive
+     * @throws IllegalStateException    if mapper is closed
+     * @throws RuntimeException         if any exceptions were thrown during the mapping operation
+     */
+    public <T, R> void mapOrdered(Function<? super T, ? extends R> f, Iterable<? extends T> args, int window,
+                                  Consumer<? super R> downstream) throws InterruptedException {
+        ensureOpen();
+        
+        OrderedQueryHelper<T, R> currentHelper = new OrderedQueryHelper<>(f, checkPositive(window, "Window"));
+        register(currentHelper);
+        final long startTime = System.nanoTime();
+        try {
+            currentHelper.run(args.iterator(), downstream);
+        } finally {
+            activeQueries.remove(currentHelper);
+            scheduler.metrics().queryCompleted(System.nanoTime() - startTime);
+        }
+    }
+    
+    /**
+     * Chooses size of contiguous ranges that are processed as a single task.
+     * Every thread gets about {@link #CHUNKS_PER_THREAD} ranges, so that stealing could still even out
+     * elements of different cost, short lists are processed element by element.
+     * Chunk is never longer than {@link #MAXIMUM_CHUNK_SIZE}, so that cancelled query drops most of its work,
+     * workers are given back to other calls by {@link #TIME_SLICE_NANOS time}.
+     * If mapper is not chunked every element is processed separately.
+     *
+     * @param size number of elements to map
+     * @return positive number of elements in one task
+     */
+    private int chunkSize(int size) {
+        if (!chunked) {
+            return 1;
         }
-        return currentHelper.evaluate();
+        return Math.clamp(Math.ceilDiv(size, scheduler.parallelism() * CHUNKS_PER_THREAD), 1, MAXIMUM_CHUNK_SIZE);
+    }
+    
+    /**
+     * Returns live view of runtime metrics of this mapper
+     *
+     * @return metrics of this mapper
+     */
+    public ParallelMapperMXBean metrics() {
+        return scheduler.metrics();
+    }
+    
+    /**
+     * Registers metrics of this mapper in the platform MBean server
+     * under {@code info.kgeorgiy.ja.konovalov.iterative:type=ParallelMapper,name=<name>}.
+     * Metrics are unregistered when mapper is closed.
+     *
+     * @param name name that distinguishes this mapper from others
+     * @return name of registered MBean
+     * @throws JMException if MBean with the same name is already registered or name is invalid
+     * @throws IllegalStateException if mapper is closed or its metrics are already registered
+     */
+    public synchronized ObjectName registerMBean(String name) throws JMException {
+        ensureOpen();
+        if (mBeanName != null) {
+            throw new IllegalStateException("Metrics are already registered as " + mBeanName);
+        }
+        
+        final ObjectName objectName = new ObjectName(
+                "info.kgeorgiy.ja.konovalov.iterative:type=ParallelMapper,name=" + ObjectName.quote(name)
+        );
+        ManagementFactory.getPlatformMBeanServer().registerMBean(scheduler.metrics(), objectName);
+        mBeanName = objectName;
+        return objectName;
     }
     
     @Override
@@ -75,17 +372,32 @@ public class ParallelMapperImpl implements ParallelMapper {
         ensureOpen();
         
         closed = true;
-        queue.terminate();
-        runningThreads.forEach(Thread::interrupt);
-        for (var u : runningThreads) {
-            boolean succeeded = false;
-            while (!succeeded) {
-                try {
-                    u.join();
-                    succeeded = true;
-                } catch (InterruptedException ignored) {
-                }
+        scheduler.close();
+        activeQueries.forEach(Query::fail);
+        unregisterMBean();
+    }
+    
+    private synchronized void unregisterMBean() {
+        if (mBeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mBeanName);
+            } catch (JMException ignored) {
+                // somebody has unregistered it already
             }
+            mBeanName = null;
+        }
+    }
+    
+    /**
+     * Remembers query until it is completed, so that {@link #close()} could fail it instead of leaving caller waiting.
+     * If mapper is closed concurrently, query is failed right away.
+     *
+     * @param query query to register
+     */
+    private void register(Query query) {
+        activeQueries.add(query);
+        if (closed) {
+            query.fail();
         }
     }
     
@@ -99,239 +411,344 @@ public class ParallelMapperImpl implements ParallelMapper {
     }
     
     /**
-     * Class provides a helper for parallel mapping operations.
-     * Stores {@code List<R>} that is going to be returned as a result of map operation.
-     * Exception aggregated from all mapping operations and
-     * Counter that shows how many elements are not processed yet
-     * @param <R>
+     * Running query that should be failed if mapper is closed
      */
-    private class MapQueryHelper<R> {
-        private final List<R> mappedValues;
-        private final SynchronizedValue<RuntimeException> cumulativeException;
-        private final CounterDown counter;
-        
+    private interface Query {
         /**
-         * Creates MapQueryHelper with list of proviede capacity
+         * Fails the query because mapper was closed, does nothing if query is already completed
          */
-        public MapQueryHelper(int capacity) {
-            counter = new CounterDown(capacity);
-            cumulativeException = new SynchronizedValue<>(null);
-            mappedValues = new ArrayList<>(Collections.nCopies(capacity, null));
-        }
+        void fail();
+    }
+    
+    /**
+     * Class provides a helper for parallel mapping operations.
+     * Stores {@code List<R>} that is going to be returned as a result of map operation,
+     * exception aggregated from all mapping operations and
+     * counter that shows how many chunks are not processed yet.
+     * The chunk that brings counter to zero completes {@link #result}, so the caller is woken up immediately.
+     * <p>
+     * Submitted tasks are not bound to chunks, every task claims the next not started chunk by itself.
+     * That way cancellation could claim all the remaining chunks at once, so they are dropped
+     * without waiting for their tasks to be dequeued.
+     * Only a limited window of tasks is submitted, after its chunk every task resubmits itself to the tail
+     * of the queue, so that tasks of different queries alternate.
+     * When other queries are active, task also resubmits the rest of its chunk after {@link #TIME_SLICE_NANOS},
+     * so expensive elements do not hold the worker for long. Time is read once per {@link #TIME_CHECK_MASK 64} elements.
+     * @param <T> type of elements to map
+     * @param <R> type of mapped values
+     */
+    private class MapQueryHelper<T, R> implements Query {
+        private final Function<? super T, ? extends R> f;
+        private final List<? extends T> args;
+        private final Predicate<? super R> stopCondition;
+        private final int chunkSize;
+        private final int chunks;
+        private final int window;
+        private final List<R> mappedValues;
+        private final AtomicReference<RuntimeException> cumulativeException = new AtomicReference<>();
+        private final AtomicInteger counter;
+        private final AtomicInteger nextChunk = new AtomicInteger();
+        private final int affinity = nextAffinity.getAndIncrement();
+        private final CompletableFuture<List<R>> result = new CompletableFuture<>();
+        private final long startTime = System.nanoTime();
+        private volatile boolean cancelled = false;
         
         /**
-         * Sets the mapped value at the specified index in the mappedValues list, UN_SYNCHRONIZED!
-         * By the contract only one set to each index is allowed
-         * Decreases the counter SYNCHRONIZED.
-         *
-         * @param index       the index at which to set the mapped value
-         * @param mappedValue the mapped value to be set to the resulting list
+         * Creates MapQueryHelper that maps {@code args} by contiguous chunks,
+         * stops when {@code stopCondition} is satisfied, if it is not null,
+         * and keeps {@code weight} tasks per worker in the queues
          */
-        public void set(int index, R mappedValue) {
-            mappedValues.set(index, mappedValue);
-            decreaseCounter();
+        public MapQueryHelper(Function<? super T, ? extends R> f, List<? extends T> args,
+                              Predicate<? super R> stopCondition, int weight) {
+            this.f = f;
+            this.args = args;
+            this.stopCondition = stopCondition;
+            chunkSize = chunkSize(args.size());
+            chunks = Math.ceilDiv(args.size(), chunkSize);
+            window = (int) Math.min(chunks, (long) scheduler.parallelism() * weight);
+            counter = new AtomicInteger(chunks);
+            mappedValues = new ArrayList<>(Collections.nCopies(args.size(), null));
+            result.whenComplete((ignoredResult, ignoredException) -> {
+                activeQueries.remove(this);
+                scheduler.metrics().queryCompleted(System.nanoTime() - startTime);
+            });
+            if (args.isEmpty()) {
+                complete();
+            }
         }
         
         /**
-         * Adds the specified exception to current aggregated exception
+         * Submits window of tasks to the scheduler, stops if the query is cancelled
          *
-         * @param e the exception to add to the suppressed exceptions list
+         * @throws InterruptedException if the current thread is interrupted while waiting for free space in scheduler
          */
-        public void addSuppressed(RuntimeException e) {
-            cumulativeException.apply(currentException -> {
-                if (currentException == null) {
-                    return e;
-                } else {
-                    currentException.addSuppressed(e);
-                    return currentException;
-                }
-            });
-            decreaseCounter();
+        public void submitChunks() throws InterruptedException {
+            for (int i = 0; i < window && !cancelled; i++) {
+                scheduler.submit(this::mapNextChunk, affinity);
+            }
         }
         
-        //synchronized is only needed to be able to do notify, so for that reason counter is not synchronized,
-        // and just counts down under locks :(, would be so nice to make it SynchronizedValue too, like the exception
         /**
-         * Decreases the counter. If the counter reaches zero after decrementing, it notifies wait inside {@link #evaluate()}
+         * Claims next not started chunk, maps its elements and stores results, UN_SYNCHRONIZED!
+         * By the contract every chunk is claimed once, so different calls do not write the same indices.
+         * Stops after current element if the query is cancelled.
+         * Decreases the counter once per whole chunk, results are published by that decrement.
          */
-        synchronized private void decreaseCounter() {
-            if (counter.decrementAndCheckForZero()) {
-                notify();
+        private void mapNextChunk() {
+            final int chunk = nextChunk.getAndIncrement();
+            if (chunk >= chunks) {
+                return;
             }
+            
+            final int lowerBound = chunk * chunkSize;
+            mapRange(lowerBound, Math.min(args.size(), lowerBound + chunkSize));
         }
         
         /**
-         * This method evaluates the results of a parallel mapping operation.
-         *
-         * @return the list of mapped values
-         * @throws InterruptedException if the current thread is interrupted while waiting
-         * @throws IllegalStateException if the parallel mapper is closed
-         * @throws RuntimeException if any exceptions were thrown during the mapping operation
+         * Maps elements of the claimed chunk starting from {@code lowerBound}.
+         * If time slice is over and other queries are active, resubmits the rest of the chunk and returns,
+         * chunk is finished only by the task that maps its last element.
          */
-        synchronized public List<R> evaluate() throws InterruptedException {
-            while (!counter.isZero() && !closed) {
-                wait(DEFAULT_TIMEOUT_IN_MILLISECONDS);
+        private void mapRange(int lowerBound, int upperBound) {
+            final long sliceStart = System.nanoTime();
+            int next = lowerBound;
+            boolean yielded = false;
+            try {
+                while (next < upperBound && !cancelled) {
+                    mapElement(next++);
+                    if (next < upperBound && ((next - lowerBound) & TIME_CHECK_MASK) == 0
+                            && activeQueries.size() > 1 && System.nanoTime() - sliceStart >= TIME_SLICE_NANOS) {
+                        yielded = true;
+                        break;
+                    }
+                }
+            } finally {
+                if (!yielded) {
+                    finishChunks(1);
+                }
             }
             
-            //even if counted correctly, if mapper is closed exception is thrown :(
-            if (closed) {
-                ensureOpen();
+            if (yielded) {
+                final int rest = next;
+                scheduler.resubmit(() -> mapRange(rest, upperBound));
+            } else if (!cancelled && nextChunk.get() < chunks) {
+                scheduler.resubmit(this::mapNextChunk);
             }
-            
-            RuntimeException e = cumulativeException.get();
-            if (e == null) {
-                return mappedValues;
-            } else {
-                throw e;
+        }
+        
+        private void mapElement(int index) {
+            try {
+                final R value = f.apply(args.get(index));
+                mappedValues.set(index, value);
+                if (stopCondition != null && stopCondition.test(value)) {
+                    cancel();
+                }
+            } catch (RuntimeException e) {
+                addSuppressed(e);
+                cancel();
             }
         }
-    }
-    
-    /**
-     * CounterDown represents a counter that can be decremented and checked for zero.
-     * The counter cannot have a negative value.
-     * <h3>Consider using java.util.concurrent.CountDownLatch</h3>
-     * @see java.util.concurrent.CountDownLatch
-     */
-    private static class CounterDown {
-        /**
-         * Stored counter
-         */
-        private int counter;
         
         /**
-         * Constructs Counter with given number of decreases to perform
-         * @param counter timer value to set
+         * Stops the query: claims all chunks that are not started yet and counts them as finished.
+         * Query completes as soon as running chunks finish their current element.
          */
-        CounterDown(int counter) {
-            if (counter < 0) {
-                throw new IllegalArgumentException("counter should be used with non-negative values");
+        private void cancel() {
+            cancelled = true;
+            final int claimed = nextChunk.getAndSet(chunks);
+            if (claimed < chunks) {
+                finishChunks(chunks - claimed);
             }
-            this.counter = counter;
         }
         
         /**
-         * Decrements counter, returns true if counter was decremented to zero.
-         * @return true if counter is equal to 0 after decrement, false otherwise
+         * Stops the query and completes it with given reason right away, does nothing if query is already completed
+         *
+         * @param reason exception to complete query with
          */
-        boolean decrementAndCheckForZero() {
-            counter--;
-            return counter == 0;
+        public void abort(Exception reason) {
+            if (result.completeExceptionally(reason)) {
+                cancel();
+            }
         }
         
-        /**
-         * Checks that stored value is zero
-         * @return true if counter is zero, false otherwise
-         */
-        boolean isZero() {
-            return counter == 0;
+        private void finishChunks(int finished) {
+            if (counter.addAndGet(-finished) == 0) {
+                complete();
+            }
         }
-    }
-    
-    /**
-     * A thread-safe wrapper class that holds a value and provides synchronized methods to modify and access the value.
-     * Implemented with mutexes... So not good for performance.
-     * <h3>
-     * consider using Atomics if you have such option
-     * </h3>
-     * @param <T> the type of the value
-     */
-    private static class SynchronizedValue<T> {
-        /**
-         * Stored value
-         */
-        private T value;
         
         /**
-         * Default construct SynchronizedValue from given Value
+         * Adds the specified exception to current aggregated exception.
+         * First exception becomes the aggregated one, {@link Throwable#addSuppressed} is thread-safe itself.
+         *
+         * @param e the exception to add to the suppressed exceptions list
          */
-        public SynchronizedValue(T value) {
-            this.value = value;
+        private void addSuppressed(RuntimeException e) {
+            if (!cumulativeException.compareAndSet(null, e)) {
+                cumulativeException.get().addSuppressed(e);
+            }
         }
         
         /**
-         * Applies the given unary operator to the value and sets value as a result
-         *
-         * @param f the unary operator to apply
+         * Completes the query with either mapped values or aggregated exception
          */
-        synchronized void apply(UnaryOperator<T> f) {
-            value = f.apply(value);
+        private void complete() {
+            RuntimeException e = cumulativeException.get();
+            if (e == null) {
+                result.complete(mappedValues);
+            } else {
+                result.completeExceptionally(e);
+            }
+        }
+        
+        @Override
+        public void fail() {
+            abort(new IllegalStateException("ParallelMapper is closed"));
         }
         
         /**
-         * Returns stored value. Should be called at most once.
-         * Double invocation of that function is undefined behaviour
-         * @return stored value
+         * This method evaluates the results of a parallel mapping operation.
+         *
+         * @return the list of mapped values
+         * @throws InterruptedException if the current thread is interrupted while waiting
+         * @throws IllegalStateException if the parallel mapper is closed
+         * @throws RuntimeException if any exceptions were thrown during the mapping operation
          */
-        synchronized T get() {
-            return value;
+        public List<R> evaluate() throws InterruptedException {
+            try {
+                return result.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
         }
     }
     
-    
     /**
-     * SimplifiedSynchronizedQueue is a thread-safe implementation of a significantly simplified version queue,
-     * with ONLY synchronized methods push and poll, no iterators, spliterators and many other methods
-     * of regular queue
-     * <h3>
-     * Consider using lock-free or better locking queue instead if you have such option
-     * </h3>
-     * @param <T> the type of elements in the queue
+     * Class provides a helper for streaming mapping operations.
+     * Mapped values are stored in a ring buffer of {@code window} slots, element with index {@code i}
+     * uses slot {@code i % window}. Caller thread submits elements while there are free slots
+     * and passes values of the filled prefix to the downstream, parking while the next value is not ready.
+     * @param <T> type of elements to map
+     * @param <R> type of mapped values
      */
-    private class SimplifiedSynchronizedQueue<T> {
-        private final Queue<T> queue;
-        private final int MAXIMUM_CAPACITY = 10000;
+    private class OrderedQueryHelper<T, R> implements Query {
+        /**
+         * Marks slot of the element that has thrown an exception
+         */
+        private static final Object FAILED = new Object();
+        /**
+         * Replaces null values, as null marks empty slot
+         */
+        private static final Object NULL = new Object();
+        
+        private final Function<? super T, ? extends R> f;
+        private final AtomicReferenceArray<Object> slots;
+        private final AtomicReference<RuntimeException> cumulativeException = new AtomicReference<>();
+        private final Thread caller = Thread.currentThread();
+        private final int affinity = nextAffinity.getAndIncrement();
+        private volatile long awaitedIndex = -1;
+        private volatile boolean failed = false;
         
         /**
-         * Default constructs SimplifiedSynchronizedQueue
+         * Creates OrderedQueryHelper with ring buffer of given size
          */
-        public SimplifiedSynchronizedQueue() {
-            queue = new ArrayDeque<>(MAXIMUM_CAPACITY);
+        public OrderedQueryHelper(Function<? super T, ? extends R> f, int window) {
+            this.f = f;
+            this.slots = new AtomicReferenceArray<>(window);
         }
         
         /**
-         * Pushes an item into the queue.
+         * Maps all elements and passes values to downstream, should be called by the thread that created helper
          *
-         * @param item the item to be pushed into the queue
+         * @param args       iterator over elements to map
+         * @param downstream consumer of mapped values
+         * @throws InterruptedException if the current thread is interrupted while waiting
          */
-        public synchronized void push(final T item) throws InterruptedException {
-            if (closed) {
-                return;
+        public void run(Iterator<? extends T> args, Consumer<? super R> downstream) throws InterruptedException {
+            final int window = slots.length();
+            long submitted = 0;
+            long passed = 0;
+            while (true) {
+                while (submitted - passed < window && cumulativeException.get() == null && args.hasNext()) {
+                    final T element = args.next();
+                    final long index = submitted++;
+                    scheduler.submit(() -> mapElement(element, index), affinity);
+                }
+                if (passed == submitted) {
+                    break;
+                }
+                
+                final Object value = awaitSlot(passed);
+                if (cumulativeException.get() == null) {
+                    @SuppressWarnings("unchecked") final R mapped = value == NULL ? null : (R) value;
+                    downstream.accept(mapped);
+                }
+                passed++;
             }
-            while (queue.size() == MAXIMUM_CAPACITY) {
-                wait();
+            
+            RuntimeException e = cumulativeException.get();
+            if (e != null) {
+                throw e;
             }
-            queue.add(item);
-            notifyAll();
         }
         
         /**
-         * Retrieves and removes the element at the head of this queue,
-         * waiting if necessary until an element becomes available.
-         *
-         * @return the head of this queue
-         * @throws InterruptedException if the current thread is interrupted
+         * Maps element and puts result into its slot, wakes up the caller if it waits for that element
          */
-        public synchronized T poll() throws InterruptedException {
-            if (closed) {
-                return null;
+        private void mapElement(T element, long index) {
+            Object value;
+            try {
+                final R mapped = f.apply(element);
+                value = mapped == null ? NULL : mapped;
+            } catch (RuntimeException e) {
+                if (!cumulativeException.compareAndSet(null, e)) {
+                    cumulativeException.get().addSuppressed(e);
+                }
+                value = FAILED;
             }
-            while (queue.isEmpty()) {
-                wait();
+            slots.set(slot(index), value);
+            if (awaitedIndex == index) {
+                LockSupport.unpark(caller);
             }
-            T value = queue.poll();
-            notifyAll();
-            return value;
         }
         
         /**
-         * Clears the queue if parallel mapper was closed
+         * Waits until value of given element is ready, takes it from the slot.
+         * Index is published before checking the slot, so the worker that fills slot
+         * after the check would see it and unpark the caller.
+         *
+         * @param index index of element
+         * @return value stored in the slot
+         * @throws InterruptedException if the current thread is interrupted while waiting
          */
-        public synchronized void terminate() {
-            if (!closed) {
-                return;
+        private Object awaitSlot(long index) throws InterruptedException {
+            final int slot = slot(index);
+            awaitedIndex = index;
+            Object value;
+            while ((value = slots.getAndSet(slot, null)) == null) {
+                if (failed) {
+                    ensureOpen();
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.park(this);
             }
-            queue.clear();
+            return value;
+        }
+        
+        private int slot(long index) {
+            return (int) (index % slots.length());
+        }
+        
+        @Override
+        public void fail() {
+            failed = true;
+            LockSupport.unpark(caller);
         }
     }
 }
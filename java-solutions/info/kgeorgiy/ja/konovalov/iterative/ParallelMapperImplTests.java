@@ -0,0 +1,222 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+public class ParallelMapperImplTests {
+    private static final int THREADS = 4;
+    private static final List<Integer> VALUES = IntStream.range(0, 10_000).boxed().toList();
+    
+    private static <T> T await(final CountDownLatch latch, final T value) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+    
+    /**
+     * Iterable over {@link #VALUES}, that records how far reading went ahead of passed values
+     */
+    private static final class CountingValues implements Iterable<Integer> {
+        private final AtomicInteger read = new AtomicInteger();
+        private final AtomicInteger passed = new AtomicInteger();
+        private final AtomicInteger maxAhead = new AtomicInteger();
+        
+        @Override
+        public Iterator<Integer> iterator() {
+            final Iterator<Integer> values = VALUES.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return values.hasNext();
+                }
+                
+                @Override
+                public Integer next() {
+                    maxAhead.accumulateAndGet(read.incrementAndGet() - passed.get(), Math::max);
+                    return values.next();
+                }
+            };
+        }
+    }
+    
+    @Test
+    public void mapAsyncResult() throws Exception {
+        try (var mapper = new ParallelMapperImpl(THREADS)) {
+            final Function<Integer, String> f = x -> Integer.toString(x * 3);
+            final CompletableFuture<List<String>> future = mapper.mapAsync(f, VALUES);
+            Assertions.assertEquals(VALUES.stream().map(f).toList(), future.get(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(List.of(), mapper.mapAsync(f, List.of()).get(10, TimeUnit.SECONDS));
+        }
+    }
+    
+    @Test
+    public void mapAsyncDoesNotBlockCaller() throws Exception {
+        try (var mapper = new ParallelMapperImpl(1)) {
+            final CountDownLatch release = new CountDownLatch(1);
+            final CompletableFuture<List<Integer>> future = mapper.mapAsync(x -> await(release, x), VALUES);
+            Assertions.assertFalse(future.isDone());
+            release.countDown();
+            Assertions.assertEquals(VALUES, future.get(10, TimeUnit.SECONDS));
+        }
+    }
+    
+    @Test
+    public void mapAsyncCancellation() throws Exception {
+        final AtomicInteger mapped = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CompletableFuture<List<Integer>> future;
+        try (var mapper = new ParallelMapperImpl(THREADS)) {
+            future = mapper.mapAsync(x -> {
+                mapped.incrementAndGet();
+                started.countDown();
+                return await(release, x);
+            }, VALUES);
+            started.await();
+            Assertions.assertTrue(future.cancel(false));
+            release.countDown();
+            
+            Assertions.assertEquals(VALUES, mapper.map(Function.identity(), VALUES));
+        }
+        Assertions.assertTrue(future.isCancelled());
+        // every worker finishes only the element it was mapping
+        Assertions.assertTrue(mapped.get() <= THREADS, "mapped " + mapped.get() + " elements after cancellation");
+    }
+    
+    @Test
+    public void mapAsyncFailure() throws Exception {
+        try (var mapper = new ParallelMapperImpl(THREADS)) {
+            final CompletableFuture<List<Integer>> future = mapper.mapAsync(x -> {
+                if (x == 5000) {
+                    throw new IllegalArgumentException("failed " + x);
+                }
+                return x;
+            }, VALUES);
+            final ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(RuntimeException.class, e.getCause());
+        }
+    }
+    
+    @Test
+    public void mapAsyncOnClosedMapper() {
+        final ParallelMapperImpl mapper = new ParallelMapperImpl(THREADS);
+        mapper.close();
+        Assertions.assertThrows(IllegalStateException.class, () -> mapper.mapAsync(Function.identity(), VALUES));
+    }
+    
+    @Test
+    public void mapAsyncClosedWhileMapping() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CompletableFuture<List<Integer>> future;
+        try (var mapper = new ParallelMapperImpl(THREADS)) {
+            future = mapper.mapAsync(x -> {
+                started.countDown();
+                return await(release, x);
+            }, VALUES);
+            started.await();
+        }
+        final ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+    
+    @Test
+    public void mapOrderedKeepsOrder() throws InterruptedException {
+        try (var mapper = new ParallelMapperImpl(THREADS)) {
+            final List<Integer> result = new ArrayList<>();
+            mapper.mapOrdered(x -> {
+                if (x % 97 == 0) {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+                }
+                return x * 2;
+            }, VALUES, 16, result::add);
+            Assertions.assertEquals(VALUES.stream().map(x -> x * 2).toList(), result);
+        }
+    }
+    
+    @Test
+    public void mapOrderedPassesNulls() throws InterruptedException {
+        try (var mapper = new ParallelMapperImpl(THREADS)) {
+            final List<Integer> result = new ArrayList<>();
+            mapper.mapOrdered(x -> x % 2 == 0 ? null : x, VALUES, 8, result::add);
+            Assertions.assertEquals(VALUES.stream().map(x -> x % 2 == 0 ? null : x).toList(), result);
+        }
+    }
+    
+    @Test
+    public void mapOrderedWindow() throws InterruptedException {
+        for (final int window : List.of(1, 3, 64)) {
+            try (var mapper = new ParallelMapperImpl(THREADS)) {
+                final CountingValues values = new CountingValues();
+                mapper.mapOrdered(x -> x, values, window, x -> values.passed.incrementAndGet());
+                Assertions.assertEquals(VALUES.size(), values.passed.get());
+                Assertions.assertTrue(values.maxAhead.get() <= window, "read ahead by " + values.maxAhead.get());
+            }
+        }
+    }
+    
+    @Test
+    public void mapOrderedBackpressure() throws InterruptedException {
+        final int window = 4;
+        try (var mapper = new ParallelMapperImpl(THREADS)) {
+            final CountingValues values = new CountingValues();
+            final AtomicInteger mapped = new AtomicInteger();
+            final AtomicInteger maxPending = new AtomicInteger();
+            mapper.mapOrdered(x -> {
+                maxPending.accumulateAndGet(mapped.incrementAndGet() - values.passed.get(), Math::max);
+                return x;
+            }, values, window, x -> {
+                if (x < 200) {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                }
+                values.passed.incrementAndGet();
+            });
+            Assertions.assertTrue(values.maxAhead.get() <= window, "read ahead by " + values.maxAhead.get());
+            Assertions.assertTrue(maxPending.get() <= window, "mapped ahead by " + maxPending.get());
+        }
+    }
+    
+    @Test
+    public void mapOrderedFailure() throws InterruptedException {
+        final int window = 8;
+        final int failing = 1000;
+        try (var mapper = new ParallelMapperImpl(THREADS)) {
+            final CountingValues values = new CountingValues();
+            final List<Integer> result = new ArrayList<>();
+            Assertions.assertThrows(RuntimeException.class, () -> mapper.mapOrdered(x -> {
+                if (x == failing) {
+                    throw new IllegalArgumentException("failed " + x);
+                }
+                return x;
+            }, values, window, x -> {
+                result.add(x);
+                values.passed.incrementAndGet();
+            }));
+            Assertions.assertEquals(VALUES.subList(0, result.size()), result);
+            Assertions.assertTrue(result.size() <= failing);
+            Assertions.assertTrue(values.read.get() <= failing + window + 1, "read " + values.read.get() + " elements");
+        }
+    }
+    
+    @Test
+    public void mapOrderedInvalidWindow() {
+        try (var mapper = new ParallelMapperImpl(THREADS)) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> mapper.mapOrdered(x -> x, VALUES, 0, x -> {}));
+        }
+    }
+}
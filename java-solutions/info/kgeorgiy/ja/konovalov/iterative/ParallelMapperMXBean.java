@@ -0,0 +1,101 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+/**
+ * Runtime metrics of {@link ParallelMapperImpl}, available through {@link ParallelMapperImpl#metrics()}
+ * and through JMX, once mapper is registered with {@link ParallelMapperImpl#registerMBean(String)}.
+ * All times are in nanoseconds, percentiles are precise up to a factor of two.
+ */
+public interface ParallelMapperMXBean {
+    /**
+     * Returns number of live worker threads, both busy and idle.
+     * For elastic mapper that is the current size of the pool.
+     * Virtual-thread mapper has no long-living workers, for it that is the number of running tasks.
+     *
+     * @return number of threads
+     */
+    int getWorkerCount();
+    
+    /**
+     * Returns number of tasks that are enqueued, but not started yet
+     *
+     * @return number of queued tasks
+     */
+    long getQueueDepth();
+    
+    /**
+     * Returns total number of enqueued tasks, including continuations of running queries
+     *
+     * @return number of enqueued tasks
+     */
+    long getSubmittedTasks();
+    
+    /**
+     * Returns total number of finished tasks
+     *
+     * @return number of finished tasks
+     */
+    long getCompletedTasks();
+    
+    /**
+     * Returns total time that callers spent waiting for free space in bounded queues
+     *
+     * @return time blocked on back-pressure
+     */
+    long getProducerBlockedNanos();
+    
+    /**
+     * Returns time that every current worker spent executing tasks
+     *
+     * @return busy time per worker
+     */
+    long[] getWorkerBusyNanos();
+    
+    /**
+     * Returns time that every current worker spent looking for tasks and waiting for them
+     *
+     * @return idle time per worker
+     */
+    long[] getWorkerIdleNanos();
+    
+    /**
+     * Returns median time between enqueueing of a task and its finish
+     *
+     * @return median task latency
+     */
+    long getTaskLatencyP50Nanos();
+    
+    /**
+     * Returns 90th percentile of time between enqueueing of a task and its finish
+     *
+     * @return 90th percentile of task latency
+     */
+    long getTaskLatencyP90Nanos();
+    
+    /**
+     * Returns 99th percentile of time between enqueueing of a task and its finish
+     *
+     * @return 99th percentile of task latency
+     */
+    long getTaskLatencyP99Nanos();
+    
+    /**
+     * Returns total number of finished {@code map} calls, including failed and cancelled ones
+     *
+     * @return number of finished calls
+     */
+    long getCompletedQueries();
+    
+    /**
+     * Returns median duration of {@code map} call
+     *
+     * @return median call duration
+     */
+    long getQueryTimeP50Nanos();
+    
+    /**
+     * Returns 99th percentile of {@code map} call duration
+     *
+     * @return 99th percentile of call duration
+     */
+    long getQueryTimeP99Nanos();
+}
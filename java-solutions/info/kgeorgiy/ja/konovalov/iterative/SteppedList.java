@@ -1,27 +1,47 @@
 package info.kgeorgiy.ja.konovalov.iterative;
 
 import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
 
 /**
  * Represents a list that represents a subset of another list by stepping through it in intervals.
  * The step size determines how big should be the step of iteration in original list.
+ * Random access lists are viewed in place, sub-lists and iteration go through {@link #get},
+ * so they touch only the stepped elements. Other lists are copied once, in a single sequential pass.
  *
  * @param <T> the type of elements in the list
  */
-public class SteppedList<T> extends AbstractList<T> {
+public class SteppedList<T> extends AbstractList<T> implements RandomAccess {
     private final List<T> actualList;
     private final int step;
     
     /**
      * Constructs a new SteppedList with the given list and step size.
+     * List without {@link RandomAccess} is not viewed, its stepped elements are copied.
      *
      * @param list the list to be used
      * @param step the step size
      */
     public SteppedList(List<T> list, int step) {
-        this.actualList = list;
-        this.step = step;
+        if (list instanceof RandomAccess) {
+            this.actualList = list;
+            this.step = step;
+        } else {
+            final List<T> copy = new ArrayList<>(Math.ceilDiv(list.size(), step));
+            final Iterator<T> iterator = list.iterator();
+            for (int i = 0; iterator.hasNext(); i++) {
+                final T value = iterator.next();
+                if (i % step == 0) {
+                    copy.add(value);
+                }
+            }
+            this.actualList = copy;
+            this.step = 1;
+        }
     }
     
     @Override
@@ -31,6 +51,18 @@ public class SteppedList<T> extends AbstractList<T> {
     
     @Override
     public int size() {
-        return (actualList.size() + step - 1) / step;
+        return Math.ceilDiv(actualList.size(), step);
+    }
+    
+    /**
+     * Returns stepped view of the corresponding range of the original list
+     */
+    @Override
+    public List<T> subList(int fromIndex, int toIndex) {
+        Objects.checkFromToIndex(fromIndex, toIndex, size());
+        if (fromIndex == toIndex) {
+            return List.of();
+        }
+        return new SteppedList<>(actualList.subList(fromIndex * step, (toIndex - 1) * step + 1), step);
     }
 }
@@ -0,0 +1,56 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+import java.util.List;
+
+/**
+ * Executes tasks of {@link ParallelMapperImpl}.
+ * Tasks are expected to handle their own exceptions, as there is nobody to report them to.
+ */
+interface TaskScheduler {
+    /**
+     * Returns number of tasks that could be executed simultaneously
+     *
+     * @return positive number of simultaneously executed tasks
+     */
+    int parallelism();
+    
+    /**
+     * Enqueues task for execution, waiting if necessary until scheduler could accept it.
+     * Task is silently dropped if scheduler is closed.
+     * Scheduler could keep tasks with the same affinity close to each other, or ignore it.
+     *
+     * @param task     task to execute
+     * @param affinity placement hint, usually the same for all tasks of a query
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    void submit(Runnable task, int affinity) throws InterruptedException;
+    
+    /**
+     * Enqueues continuation of a running task, never waits.
+     * Continuation is placed behind tasks that are already queued, so tasks of other queries
+     * are not starved by the query that keeps resubmitting itself.
+     * Continuation is silently dropped if scheduler is closed.
+     *
+     * @param task task to execute
+     */
+    void resubmit(Runnable task);
+    
+    /**
+     * Returns metrics of this scheduler
+     *
+     * @return metrics, that are updated by this scheduler
+     */
+    MapperMetrics metrics();
+    
+    /**
+     * Returns busy and idle times of current workers
+     *
+     * @return times, one per worker
+     */
+    List<MapperMetrics.WorkerTimes> workerTimes();
+    
+    /**
+     * Interrupts running tasks, waits for them to finish and drops all tasks that were not started
+     */
+    void close();
+}
@@ -0,0 +1,125 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Scheduler that runs every task on its own virtual thread.
+ * Number of simultaneously running tasks is limited, submitters wait for a free slot.
+ * Tasks that block (on I/O, locks or sleeps) do not hold any platform thread while waiting,
+ * so the limit could be much bigger than the number of cores.
+ */
+final class VirtualThreadScheduler implements TaskScheduler {
+    private final int maxConcurrency;
+    private final Semaphore slots;
+    private final Set<Thread> runningThreads = ConcurrentHashMap.newKeySet();
+    /**
+     * Unlike {@link Thread.Builder}, factory is thread-safe, so tasks could be started from any thread
+     */
+    private final ThreadFactory threadFactory = Thread.ofVirtual().name("parallel-mapper-virtual-", 0).factory();
+    private final MapperMetrics metrics = new MapperMetrics(this);
+    private volatile boolean closed = false;
+    
+    /**
+     * Creates scheduler with given limit of simultaneously running tasks
+     *
+     * @param maxConcurrency maximum number of simultaneously running tasks, should be positive
+     */
+    VirtualThreadScheduler(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+        this.slots = new Semaphore(maxConcurrency);
+    }
+    
+    @Override
+    public int parallelism() {
+        return maxConcurrency;
+    }
+    
+    /**
+     * Starts task on a new virtual thread, affinity is ignored, as virtual threads are not bound to carriers
+     */
+    @Override
+    public void submit(Runnable task, int affinity) throws InterruptedException {
+        if (!slots.tryAcquire()) {
+            final long start = System.nanoTime();
+            slots.acquire();
+            metrics.producerBlocked(System.nanoTime() - start);
+        }
+        if (closed) {
+            slots.release();
+            return;
+        }
+        final Runnable tracked = metrics.track(task);
+        threadFactory.newThread(() -> runInSlot(tracked)).start();
+    }
+    
+    /**
+     * Starts continuation on a new virtual thread, that waits for a free slot by itself
+     *
+     * @param task task to execute
+     */
+    @Override
+    public void resubmit(Runnable task) {
+        if (closed) {
+            return;
+        }
+        final Runnable tracked = metrics.track(task);
+        threadFactory.newThread(() -> {
+            // waits until some running task frees its slot, close frees them too
+            slots.acquireUninterruptibly();
+            runInSlot(tracked);
+        }).start();
+    }
+    
+    /**
+     * Runs task on the current virtual thread and frees the slot, that was acquired for it
+     */
+    private void runInSlot(Runnable task) {
+        final Thread current = Thread.currentThread();
+        runningThreads.add(current);
+        try {
+            // close could have missed this thread, so it has to check by itself
+            if (!closed) {
+                task.run();
+            }
+        } finally {
+            runningThreads.remove(current);
+            slots.release();
+        }
+    }
+    
+    @Override
+    public MapperMetrics metrics() {
+        return metrics;
+    }
+    
+    /**
+     * Virtual threads live for a single task, so there are no long-living workers to report.
+     * Running tasks are reported as workers without accumulated time.
+     */
+    @Override
+    public List<MapperMetrics.WorkerTimes> workerTimes() {
+        return Collections.nCopies(runningThreads.size(), new MapperMetrics.WorkerTimes(0, 0));
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        final List<Thread> snapshot = List.copyOf(runningThreads);
+        snapshot.forEach(Thread::interrupt);
+        for (var thread : snapshot) {
+            boolean succeeded = false;
+            while (!succeeded) {
+                try {
+                    thread.join();
+                    succeeded = true;
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+    }
+}
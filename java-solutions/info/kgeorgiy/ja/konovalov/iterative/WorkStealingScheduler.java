@@ -0,0 +1,426 @@
+package info.kgeorgiy.ja.konovalov.iterative;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Pool of worker threads, where every worker owns its own deque of tasks.
+ * External submissions are spread between the deques in round-robin manner, tasks submitted
+ * from a worker go to its own deque. Worker takes tasks from the head of its deque and,
+ * when it runs out of work, steals from the tail of the others.
+ * <p>
+ * Idle workers are parked and are woken up one at a time, so submission never wakes up every thread.
+ * At most {@link #MAXIMUM_CAPACITY} tasks could be queued at once, submitters block until there is free space.
+ * <p>
+ * Pool could be elastic: it starts with {@code minThreads} workers, starts a new one whenever a task
+ * is enqueued while nobody is idle, up to {@code maxThreads}, and retires workers that
+ * stayed idle for the keep-alive time, down to {@code minThreads}.
+ * <p>
+ * Workers could be split into groups, for example one per CPU socket. Submitted tasks are queued to workers
+ * of the group chosen by their affinity, and continuations stay with the worker that resubmits them.
+ * Worker steals from its own group first and crosses the group boundary only when the whole group is out of work,
+ * a task enqueued to some worker wakes up an idle worker of the same group, if there is one.
+ * So tasks of a query, and the data they touch, tend to stay within a group.
+ * Java has no way to bind threads to CPUs, so groups are logical:
+ * the operating system is expected to keep threads that share data close to each other.
+ */
+final class WorkStealingScheduler implements TaskScheduler {
+    private static final int MAXIMUM_CAPACITY = 10000;
+    private static final int ANY_GROUP = -1;
+
+    private final int minThreads;
+    private final int maxThreads;
+    private final long keepAliveNanos;
+    /**
+     * Current workers, array is replaced as a whole under the lock, so readers could use it without locking
+     */
+    private volatile Worker[] workers = new Worker[0];
+    private final AtomicInteger workersCount = new AtomicInteger();
+    private final int groups;
+    private final List<ConcurrentLinkedQueue<Worker>> idleWorkers;
+    private final AtomicInteger nextGroup = new AtomicInteger();
+    private final Semaphore capacity = new Semaphore(MAXIMUM_CAPACITY);
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final MapperMetrics metrics = new MapperMetrics(this);
+    private volatile boolean closed = false;
+
+    /**
+     * Creates and starts given number of workers, that never retire
+     *
+     * @param threads number of workers, should be positive
+     */
+    WorkStealingScheduler(int threads) {
+        this(threads, threads, 0, 1);
+    }
+
+    /**
+     * Creates elastic pool and starts {@code minThreads} workers
+     *
+     * @param minThreads     number of workers that never retire, should be non-negative
+     * @param maxThreads     maximum number of workers, should be positive and not less than {@code minThreads}
+     * @param keepAliveNanos time that worker above {@code minThreads} stays idle before retiring
+     * @param groups         number of worker groups, should be positive, workers are assigned to groups in turn
+     */
+    WorkStealingScheduler(int minThreads, int maxThreads, long keepAliveNanos, int groups) {
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.keepAliveNanos = keepAliveNanos;
+        this.groups = groups;
+        this.idleWorkers = Stream.generate(ConcurrentLinkedQueue<Worker>::new).limit(groups).toList();
+        for (int i = 0; i < minThreads; i++) {
+            tryStartWorker();
+        }
+    }
+
+    /**
+     * Returns maximum number of workers, as that many of them would be started under load
+     */
+    @Override
+    public int parallelism() {
+        return maxThreads;
+    }
+
+    /**
+     * Enqueues task for execution, waiting if necessary until there is a free space in queues.
+     * Task submitted from a worker goes to the worker's own deque, other tasks go to workers
+     * of the group {@code affinity % groups}.
+     *
+     * @param task     task to execute
+     * @param affinity placement hint, tasks with the same affinity are queued to the same group
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    @Override
+    public void submit(Runnable task, int affinity) throws InterruptedException {
+        if (!capacity.tryAcquire()) {
+            final long start = System.nanoTime();
+            capacity.acquire();
+            metrics.producerBlocked(System.nanoTime() - start);
+        }
+        if (closed) {
+            capacity.release();
+            return;
+        }
+
+        // permit is released when task starts, continuations never hold one
+        enqueue(metrics.track(() -> {
+            capacity.release();
+            task.run();
+        }), Math.floorMod(affinity, groups));
+    }
+
+    /**
+     * Enqueues continuation to the tail of current worker's deque, bypassing capacity bound,
+     * as number of continuations is limited by the number of running tasks.
+     *
+     * @param task task to execute
+     */
+    @Override
+    public void resubmit(Runnable task) {
+        if (!closed) {
+            enqueue(metrics.track(task), ANY_GROUP);
+        }
+    }
+
+    /**
+     * Pushes task to some deque and makes sure somebody would take it: wakes up an idle worker
+     * or starts a new one, if pool is elastic.
+     * If target worker has retired concurrently, task is taken back from its deque and enqueued again.
+     * Either this check sees the retirement, or the retiring worker sees the task while draining its deque.
+     *
+     * @param task  task to enqueue
+     * @param group group of the target worker or {@link #ANY_GROUP}
+     */
+    private void enqueue(Runnable task, int group) {
+        while (!closed) {
+            final Worker target = chooseWorker(group);
+            if (target == null) {
+                // all workers have retired, start a new one, unless somebody else is starting it right now
+                if (!tryStartWorker()) {
+                    Thread.onSpinWait();
+                }
+                continue;
+            }
+
+            target.deque.addLast(task);
+            if (target.retired && target.deque.removeLastOccurrence(task)) {
+                continue;
+            }
+            if (!signalIdle(target.group)) {
+                tryStartWorker();
+            }
+            return;
+        }
+    }
+
+    /**
+     * Chooses current worker, if it is called from a worker, or next worker of the given group in round-robin manner.
+     * If group has no workers right now, any worker is chosen.
+     */
+    private Worker chooseWorker(int group) {
+        if (Thread.currentThread() instanceof Worker current && current.owner() == this && !current.retired) {
+            return current;
+        }
+        final Worker[] current = workers;
+        if (current.length == 0) {
+            return null;
+        }
+        final int start = nextWorker.getAndIncrement();
+        if (group != ANY_GROUP && groups > 1) {
+            for (int i = 0; i < current.length; i++) {
+                final Worker candidate = current[Math.floorMod(start + i, current.length)];
+                if (candidate.group == group) {
+                    return candidate;
+                }
+            }
+        }
+        return current[Math.floorMod(start, current.length)];
+    }
+
+    /**
+     * Starts new worker if there are less than {@code maxThreads} of them
+     *
+     * @return true if worker was started
+     */
+    private boolean tryStartWorker() {
+        int count;
+        do {
+            count = workersCount.get();
+            if (count >= maxThreads) {
+                return false;
+            }
+        } while (!workersCount.compareAndSet(count, count + 1));
+
+        synchronized (this) {
+            if (closed) {
+                workersCount.decrementAndGet();
+                return false;
+            }
+            final Worker worker = new Worker(Math.floorMod(nextGroup.getAndIncrement(), groups));
+            final Worker[] current = workers;
+            final Worker[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = worker;
+            workers = updated;
+            worker.start();
+        }
+        return true;
+    }
+
+    /**
+     * Decreases number of workers if there are more than {@code minThreads} of them
+     *
+     * @return true if caller should retire
+     */
+    private boolean tryReserveRetirement() {
+        int count;
+        do {
+            count = workersCount.get();
+            if (count <= minThreads) {
+                return false;
+            }
+        } while (!workersCount.compareAndSet(count, count - 1));
+        return true;
+    }
+
+    private synchronized void removeWorker(Worker worker) {
+        workers = Arrays.stream(workers).filter(w -> w != worker).toArray(Worker[]::new);
+    }
+
+    @Override
+    public MapperMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public List<MapperMetrics.WorkerTimes> workerTimes() {
+        return Arrays.stream(workers)
+                .map(worker -> new MapperMetrics.WorkerTimes(worker.busyNanos, worker.idleNanos))
+                .toList();
+    }
+
+    @Override
+    public void close() {
+        final Worker[] snapshot;
+        synchronized (this) {
+            closed = true;
+            snapshot = workers;
+        }
+        for (var worker : snapshot) {
+            worker.interrupt();
+            LockSupport.unpark(worker);
+        }
+        for (var worker : snapshot) {
+            boolean succeeded = false;
+            while (!succeeded) {
+                try {
+                    worker.join();
+                    succeeded = true;
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+        for (var worker : snapshot) {
+            worker.deque.clear();
+        }
+        // releases producers that are still waiting for free space, they would see closed flag
+        capacity.release(MAXIMUM_CAPACITY);
+    }
+
+    /**
+     * Wakes up one of parked workers, if there are any, worker of the given group is preferred
+     *
+     * @param group preferred group
+     * @return true if some worker was woken up
+     */
+    private boolean signalIdle(int group) {
+        for (int i = 0; i < groups; i++) {
+            final Worker idle = idleWorkers.get((group + i) % groups).poll();
+            if (idle != null) {
+                LockSupport.unpark(idle);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Worker thread with its own deque of tasks
+     */
+    private final class Worker extends Thread {
+        private final ConcurrentLinkedDeque<Runnable> deque = new ConcurrentLinkedDeque<>();
+        private final int group;
+        private volatile boolean retired = false;
+        // written only by the worker itself
+        private volatile long busyNanos = 0;
+        private volatile long idleNanos = 0;
+
+        private Worker(int group) {
+            this.group = group;
+        }
+
+        private WorkStealingScheduler owner() {
+            return WorkStealingScheduler.this;
+        }
+
+        @Override
+        public void run() {
+            long lastTime = System.nanoTime();
+            while (!closed && !retired) {
+                final Runnable task = takeTask();
+                final long taken = System.nanoTime();
+                idleNanos += taken - lastTime;
+                lastTime = taken;
+                if (task != null) {
+                    task.run();
+                    // interruption of a task should not stop the worker, only close does it
+                    Thread.interrupted();
+                    final long finished = System.nanoTime();
+                    busyNanos += finished - lastTime;
+                    lastTime = finished;
+                }
+            }
+        }
+
+        /**
+         * Takes task from own deque or steals one, parks if there is nothing to do.
+         * Worker registers itself as idle before the last scan, so task pushed after
+         * that scan would unpark it and no wake-up is lost.
+         * Worker that was not woken up by anybody during the keep-alive time retires.
+         *
+         * @return found task or null if worker was woken up without any task
+         */
+        private Runnable takeTask() {
+            Runnable task = findTask();
+            if (task != null) {
+                return task;
+            }
+
+            idleWorkers.get(group).add(this);
+            task = findTask();
+            boolean timedOut = false;
+            if (task == null && !closed) {
+                Thread.interrupted();
+                if (minThreads == maxThreads) {
+                    LockSupport.park(this);
+                } else {
+                    final long deadline = System.nanoTime() + keepAliveNanos;
+                    LockSupport.parkNanos(this, keepAliveNanos);
+                    timedOut = System.nanoTime() - deadline >= 0;
+                }
+            }
+            // if worker is not in the queue anymore, somebody has woken it up to take a task
+            final boolean signalled = !idleWorkers.get(group).remove(this);
+            if (task == null && timedOut && !signalled && tryReserveRetirement()) {
+                retire();
+            }
+            return task;
+        }
+
+        /**
+         * Leaves the pool and gives all the tasks from own deque to other workers
+         */
+        private void retire() {
+            removeWorker(this);
+            retired = true;
+            Runnable task;
+            while ((task = deque.pollFirst()) != null) {
+                enqueue(task, group);
+            }
+        }
+
+        private Runnable findTask() {
+            final Runnable own = deque.pollFirst();
+            if (own != null) {
+                propagateSignal(deque);
+                return own;
+            }
+
+            final Worker[] current = workers;
+            final Runnable local = steal(current, true);
+            return local != null ? local : steal(current, false);
+        }
+
+        /**
+         * Tries to steal a task from workers of own group or from workers of other groups.
+         * Victims are checked starting from a random one, so thieves do not crowd around the same deque.
+         *
+         * @param current   current workers
+         * @param sameGroup whether to check workers of own group or of the other ones
+         * @return stolen task or null if there was nothing to steal
+         */
+        private Runnable steal(Worker[] current, boolean sameGroup) {
+            final int size = current.length;
+            if (size == 0 || !sameGroup && groups == 1) {
+                return null;
+            }
+            final int start = ThreadLocalRandom.current().nextInt(size);
+            for (int i = 0; i < size; i++) {
+                final Worker victim = current[(start + i) % size];
+                if (victim != this && (victim.group == group) == sameGroup) {
+                    final Runnable stolen = victim.deque.pollLast();
+                    if (stolen != null) {
+                        propagateSignal(victim.deque);
+                        return stolen;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Wakes up one more worker if there is still work left in deque, so tasks pushed
+         * while everybody was parked do not end up executed by a single worker
+         */
+        private void propagateSignal(ConcurrentLinkedDeque<Runnable> source) {
+            if (!source.isEmpty()) {
+                signalIdle(group);
+            }
+        }
+    }
+}
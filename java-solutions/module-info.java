@@ -13,6 +13,7 @@ module info.kgeorgiy.ja.konovalov {
     requires info.kgeorgiy.java.advanced.hello;
     
     requires java.compiler;
+    requires java.management;
     requires java.rmi;
     requires jdk.httpserver;
     requires org.junit.platform.engine;
@@ -26,4 +27,6 @@ module info.kgeorgiy.ja.konovalov {
     exports info.kgeorgiy.ja.konovalov.bank.person to java.rmi, org.junit.platform.commons;
     exports info.kgeorgiy.ja.konovalov.bank.account;
     opens info.kgeorgiy.ja.konovalov.bank.account to org.junit.platform.launcher;
+    
+    exports info.kgeorgiy.ja.konovalov.iterative to java.management;
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+#!/bin/bash
+
+# Runs JMH benchmarks of iterative package, arguments are passed to JMH as is, for example:
+#   ./runBenchmarks.sh IterativeParallelismBenchmark.map -p size=1000000 -p threads=4
+# jmh-core, jmh-generator-annprocess and their dependencies (jopt-simple, commons-math3)
+# should be put to lib directory or to one of the directories listed in getClasspaths.sh
+
+PROJECT_ROOT="$(pwd)"
+OUT_DIR="$PROJECT_ROOT/out/benchmarks"
+
+CLASS_PATH=`./getClasspaths.sh`
+
+rm -rf "$OUT_DIR"
+mkdir -p "$OUT_DIR"
+
+find java-solutions/info/kgeorgiy/ja/konovalov/iterative java-benchmarks -name "*.java" > sources.txt
+
+# Compile sources together with benchmarks, annotation processor generates JMH harness
+javac -classpath "$CLASS_PATH" -d "$OUT_DIR" @sources.txt
+
+rm sources.txt
+
+java -cp "$OUT_DIR:$CLASS_PATH" org.openjdk.jmh.Main "$@"
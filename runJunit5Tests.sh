@@ -13,7 +13,7 @@ CLASS_PATH=`./getClasspaths.sh`
 rm -rf "$OUT_DIR"
 mkdir -p "$OUT_DIR"
 
-find java-solutions/info/kgeorgiy/ja/konovalov/bank -name "*.java" > sources.txt
+find java-solutions/info/kgeorgiy/ja/konovalov/bank java-solutions/info/kgeorgiy/ja/konovalov/iterative java-solutions/info/kgeorgiy/ja/konovalov/crawler -name "*.java" > sources.txt
 
 # Compile the test classes
 javac -classpath "$CLASS_PATH" -d "$OUT_DIR" @sources.txt